@@ -0,0 +1,102 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import dataset.CitingPaper;
+import dataset.Dataset;
+import dataset.DatasetBinary;
+import dataset.DatasetXml;
+import dataset.TextWithNgrams;
+
+/**
+ * JMH benchmarks of reading a synthetic n-gram dataset from XML (DatasetXml.parseXmlFile) 
+ * and from its binary file (DatasetBinary.read), where allCiters also decodes every citer
+ * and oneCiter only the first one.
+ * Run main() to also get allocation rates from the GC profiler.
+ * @author jonathan
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DatasetBinary_benchmark {
+	
+	@Param({"20"})
+	public int numCiters;
+	
+	private static final long SEED = 1;
+	private static final int SENTENCES_PER_CITER = 200;
+	
+	private File xmlFile;
+	private File binaryFile;
+	
+	@Setup(Level.Trial)
+	public void setupTrial() throws IOException{
+		Dataset<TextWithNgrams> dataset = SyntheticDatasets.ngramsDataset(numCiters, SENTENCES_PER_CITER, SEED);
+		xmlFile = File.createTempFile("dataset", ".xml");
+		binaryFile = DatasetBinary.binaryFile(xmlFile);
+		DatasetXml.writeToXml(dataset, xmlFile);
+		DatasetBinary.write(dataset, binaryFile);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDownTrial(){
+		xmlFile.delete();
+		binaryFile.delete();
+	}
+	
+	@Benchmark
+	public int xml(){
+		return numSentences(DatasetXml.parseXmlFile(TextWithNgrams.class, xmlFile, 0));
+	}
+	
+	@Benchmark
+	public int allCiters(){
+		return numSentences(DatasetBinary.read(TextWithNgrams.class, binaryFile, 0));
+	}
+	
+	@Benchmark
+	public int oneCiter(){
+		return DatasetBinary.read(TextWithNgrams.class, binaryFile, 0).citers.get(0).sentences.size();
+	}
+	
+	private static int numSentences(Dataset<TextWithNgrams> dataset){
+		int numSentences = 0;
+		for(CitingPaper<TextWithNgrams> citer : dataset.citers){
+			numSentences += citer.sentences.size();
+		}
+		return numSentences;
+	}
+	
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(DatasetBinary_benchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,179 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import dataset.CitingPaper;
+import dataset.Dataset;
+import dataset.Sentence;
+import dataset.TextWithHashedNgrams;
+import dataset.TextWithNgrams;
+
+/**
+ * JMH benchmarks of the similarity of neighbouring sentences of a synthetic dataset, with the
+ * sparse n-gram maps (Ngrams.similarity(other, 1, 3)) and with the hashed dense vectors of 
+ * TextWithHashedNgrams, which approximate it, both over the non-zero buckets (similarity())
+ * and over all buckets, with the dense arrays made in the setup (TextWithHashedNgrams.dot()).
+ * main() first prints the memory per sentence of 
+ * both, and how well the hashed similarities correlate with the sparse ones, over all pairs 
+ * of sentences.
+ * @author jonathan
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HashedNgrams_benchmark {
+	
+	@Param({"16", "18"})
+	public int log2Buckets;
+	
+	private static final long SEED = 1;
+	private static final int NUM_SENTENCES = 200;
+	private static final int MIN_N = 1;
+	private static final int MAX_N = 3;
+	
+	private List<TextWithNgrams> sparse;
+	private List<TextWithHashedNgrams> hashed;
+	private List<float[]> dense;
+	
+	@Setup(Level.Trial)
+	public void setupTrial(){
+		sparse = sentences(NUM_SENTENCES);
+		hashed = hash(sparse, log2Buckets);
+		dense = new ArrayList<float[]>();
+		for(TextWithHashedNgrams text : hashed){
+			dense.add(text.toDense());
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(NUM_SENTENCES - 1)
+	public double sparseSimilarity(){
+		double sum = 0;
+		for(int i = 0; i < NUM_SENTENCES - 1; i++){
+			sum += sparse.get(i).ngramsTfIdf.similarity(sparse.get(i + 1).ngramsTfIdf, MIN_N, MAX_N);
+		}
+		return sum;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(NUM_SENTENCES - 1)
+	public double hashedSimilarity(){
+		double sum = 0;
+		for(int i = 0; i < NUM_SENTENCES - 1; i++){
+			sum += hashed.get(i).similarity(hashed.get(i + 1));
+		}
+		return sum;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(NUM_SENTENCES - 1)
+	public double hashedDenseSimilarity(){
+		double sum = 0;
+		for(int i = 0; i < NUM_SENTENCES - 1; i++){
+			sum += TextWithHashedNgrams.dot(dense.get(i), dense.get(i + 1));
+		}
+		return sum;
+	}
+	
+	private static List<TextWithNgrams> sentences(int numSentences){
+		Dataset<TextWithNgrams> dataset = SyntheticDatasets.ngramsDataset(1, numSentences, SEED);
+		List<TextWithNgrams> texts = new ArrayList<TextWithNgrams>();
+		for(CitingPaper<TextWithNgrams> citer : dataset.citers){
+			for(Sentence<TextWithNgrams> sentence : citer.sentences){
+				texts.add(sentence.text);
+			}
+		}
+		return texts;
+	}
+	
+	private static List<TextWithHashedNgrams> hash(List<TextWithNgrams> texts, int log2Buckets){
+		List<TextWithHashedNgrams> hashedTexts = new ArrayList<TextWithHashedNgrams>();
+		for(TextWithNgrams text : texts){
+			hashedTexts.add(new TextWithHashedNgrams(text.raw, text.rawWords, text.lemmas, text.ngramsTfIdf, log2Buckets));
+		}
+		return hashedTexts;
+	}
+	
+	/**
+	 * Prints the heap used per sentence by the sparse texts, and what hashing them adds, and
+	 * the Pearson correlation and mean absolute difference of the two similarities.
+	 */
+	private static void report(int log2Buckets){
+		sentences(NUM_SENTENCES); //interns the words, so that the vocabulary isn't counted below
+		System.gc();
+		long before = usedHeap();
+		List<TextWithNgrams> sparse = sentences(NUM_SENTENCES);
+		System.gc();
+		long afterSparse = usedHeap();
+		List<TextWithHashedNgrams> hashed = hash(sparse, log2Buckets);
+		System.gc();
+		long afterHashed = usedHeap();
+		
+		double sumX = 0, sumY = 0, sumXX = 0, sumYY = 0, sumXY = 0, sumAbsDiff = 0;
+		int numPairs = 0;
+		for(int i = 0; i < NUM_SENTENCES; i++){
+			for(int j = i + 1; j < NUM_SENTENCES; j++){
+				double x = sparse.get(i).ngramsTfIdf.similarity(sparse.get(j).ngramsTfIdf, MIN_N, MAX_N);
+				double y = hashed.get(i).similarity(hashed.get(j));
+				sumX += x;
+				sumY += y;
+				sumXX += x * x;
+				sumYY += y * y;
+				sumXY += x * y;
+				sumAbsDiff += Math.abs(x - y);
+				numPairs++;
+			}
+		}
+		double covariance = sumXY / numPairs - (sumX / numPairs) * (sumY / numPairs);
+		double varianceX = sumXX / numPairs - Math.pow(sumX / numPairs, 2);
+		double varianceY = sumYY / numPairs - Math.pow(sumY / numPairs, 2);
+		
+		System.out.println("2^" + log2Buckets + " buckets:");
+		System.out.println("  bytes per sentence, sparse n-grams: " + (afterSparse - before) / NUM_SENTENCES);
+		System.out.println("  bytes per sentence, hashed buckets: " + (afterHashed - afterSparse) / NUM_SENTENCES);
+		System.out.println("  correlation over " + numPairs + " pairs: " + covariance / Math.sqrt(varianceX * varianceY));
+		System.out.println("  mean absolute difference: " + sumAbsDiff / numPairs);
+		if(hashed.size() != sparse.size()){
+			throw new IllegalStateException(); //keeps both lists reachable until the heap has been measured
+		}
+	}
+	
+	private static long usedHeap(){
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+	
+	public static void main(String[] args) throws RunnerException {
+		for(int log2Buckets = TextWithHashedNgrams.MIN_LOG2_BUCKETS; log2Buckets <= TextWithHashedNgrams.MAX_LOG2_BUCKETS; log2Buckets++){
+			report(log2Buckets);
+		}
+		Options options = new OptionsBuilder()
+				.include(HashedNgrams_benchmark.class.getSimpleName())
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,92 @@
+package benchmark;
+
+import gnu.trove.map.hash.TLongDoubleHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import util.Printer;
+import dataset.NgramVocabulary;
+import dataset.TextUtil;
+
+/**
+ * The n-gram and skip-gram extraction as it was before NgramExtractor worked on token arrays:
+ * every candidate n-gram is a list of words, and its words are checked against the stopwords
+ * and NUM_OR_CHAR one by one. Only kept as the baseline of NgramExtractor_benchmark.
+ * @author jonathan
+ *
+ */
+class ListNgramExtractor {
+	
+	private static final Pattern NUM_OR_CHAR = Pattern.compile("\\d+|.");
+	
+	static List<TLongDoubleHashMap> allNgramKeys(int maxN, List<String> words){
+		return IntStream.range(1, maxN + 1)
+					.mapToObj(n -> ngramKeys(n, words))
+					.collect(Collectors.toCollection(ArrayList::new));
+	}
+	
+	static List<TLongDoubleHashMap> allSkipgramKeys(int maxN, int minSkip, int maxSkip, List<String> words){
+		return IntStream.range(1, maxN + 1)
+				.mapToObj(n -> skipgramKeys(n, minSkip, maxSkip, words))
+				.collect(Collectors.toCollection(ArrayList::new));
+	}
+	
+	private static TLongDoubleHashMap ngramKeys(int n, List<String> words){
+		TLongDoubleHashMap ngramCounts = new TLongDoubleHashMap();
+		final boolean SKIP_STOPWORDS = true;
+		for(int word0 = 0; word0 <= words.size() - n; word0++){
+			maybeAddNgram(ngramCounts, words.subList(word0, word0 + n), SKIP_STOPWORDS);
+		}
+		return ngramCounts;
+	}
+	
+	private static TLongDoubleHashMap skipgramKeys(int n, int minSkip, int maxSkip, List<String> words){
+		TLongDoubleHashMap counts = new TLongDoubleHashMap();
+		if(n == 1){
+			return counts; //actually, no skipgrams are added when n == 1, so this just saves computation time
+		}
+		for(int skip = minSkip; skip <= maxSkip; skip++){
+			addSkipgrams(counts, n, skip, words);
+		}
+		return counts;
+	}
+	
+	private static void addSkipgrams(TLongDoubleHashMap counts, int n, int numSkip, List<String> words){
+		final boolean SKIP_STOPWORDS = true;
+		Printer p = new Printer(false);
+		for(int word0 = 0; word0 <= words.size() - n - numSkip; word0++){
+			p.println("w0: " + word0);
+			for(int skip0 = word0 + 1; skip0 < word0 + n; skip0++){
+				p.println(" s0: " + skip0);
+				List<String> ngramWords = new ArrayList<String>(n);
+				for(int word = word0; word < word0 + n + numSkip; word++){
+					p.println("   w: " + word);
+					boolean shouldSkip = word >= skip0 && word < skip0 + numSkip;
+					if(!shouldSkip){
+						ngramWords.add(words.get(word));
+					}
+				}
+				maybeAddNgram(counts, ngramWords, SKIP_STOPWORDS);
+			}
+		}
+	}
+	
+	private static void maybeAddNgram(TLongDoubleHashMap ngramCounts, List<String> ngramWords, boolean skipStopwords){
+		if(skipStopwords){
+			if(ngramWords.stream().anyMatch(w -> TextUtil.instance().isStopword(w))){
+				return;
+			}
+		}
+		if(ngramWords.stream().anyMatch(w -> NUM_OR_CHAR.matcher(w).matches())){
+			return;
+		}
+		if(ngramWords.size() == 1 && ngramWords.get(0).isEmpty()){
+			return;
+		}
+		ngramCounts.adjustOrPutValue(NgramVocabulary.instance().key(ngramWords), 1, 1);
+	}
+}
@@ -0,0 +1,124 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import mrf.CiterPropagation;
+import mrf.MRF_classifier;
+import mrf.MRF_params;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import dataset.Dataset;
+import dataset.Text;
+
+/**
+ * JMH benchmarks of the graphical classification, on synthetic citers (see SyntheticDatasets).
+ * classifyOneCiter measures everything (setup and belief propagation), and iterateToConvergence 
+ * only the belief propagation. The number of sweeps needed to converge is the 'sweeps' counter
+ * divided by the 'propagations' counter. Run main() to also get allocation rates from the GC profiler.
+ * @author jonathan
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MRF_benchmark {
+	
+	@Param({"100", "1000", "10000"})
+	public int sentences;
+	
+	@Param({"1", "4", "8"})
+	public int neighbourhood;
+	
+	@Param({"NGRAMS", "WIKI"})
+	public SyntheticDatasets.TextType textType;
+	
+	@Param({"HASH_MAP", "ARRAY", "LOG_ODDS"})
+	public MRF_params.MessageStore messageStore;
+	
+	private static final long SEED = 1;
+	private static final double BELIEF_THRESHOLD = 0.4;
+	private static final int MAX_RUNS = 100;
+	
+	private Dataset<Text> dataset;
+	private MRF_classifier<Text> classifier;
+	
+	@SuppressWarnings("unchecked")
+	@Setup(Level.Trial)
+	public void setupTrial(){
+		dataset = (Dataset<Text>) SyntheticDatasets.dataset(textType, 1, sentences, SEED);
+		MRF_params params = new MRF_params(neighbourhood, BELIEF_THRESHOLD, MAX_RUNS).withMessageStore(messageStore);
+		classifier = new MRF_classifier<Text>(params);
+	}
+	
+	/**
+	 * The prepared citer of iterateToConvergence, whose messages are restarted before each 
+	 * invocation. Only that benchmark takes it, so classifyOneCiter isn't slowed down by the 
+	 * invocation-level setup.
+	 */
+	@State(Scope.Thread)
+	public static class Propagation{
+		private CiterPropagation<Text> propagation;
+		
+		@Setup(Level.Trial)
+		public void prepare(MRF_benchmark benchmark){
+			propagation = benchmark.classifier.prepare(benchmark.dataset, 0);
+		}
+		
+		@Setup(Level.Invocation)
+		public void restartMessages(){
+			propagation.restart();
+		}
+	}
+	
+	/**
+	 * Summed over each iteration, and reported next to the throughput.
+	 */
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Counters{
+		public long sweeps;
+		public long propagations;
+	}
+	
+	@Benchmark
+	public Object classifyOneCiter(){
+		return classifier.classifyOneCiter(0, dataset);
+	}
+	
+	@Benchmark
+	public int iterateToConvergence(Propagation propagation, Counters counters){
+		int sweeps = propagation.propagation.iterateToConvergence();
+		counters.sweeps += sweeps;
+		counters.propagations ++;
+		return sweeps;
+	}
+	
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(MRF_benchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
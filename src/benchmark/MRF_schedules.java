@@ -0,0 +1,93 @@
+package benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+import mrf.MRF_classifier;
+import mrf.MRF_params;
+import util.Environment;
+import util.Printer;
+import dataset.Dataset;
+import dataset.DatasetBinary;
+import dataset.DatasetLoader;
+import dataset.ResultImpl;
+import dataset.SimilarityCache;
+import dataset.SimilarityProvider;
+import dataset.Text;
+import dataset.TextWithWiki;
+
+/**
+ * Classifies the datasets with the flooding and the residual schedule, and prints the results
+ * and how many message updates the residual schedule saved. Takes the same args as main.MRF.
+ * @author jonathan
+ *
+ */
+public class MRF_schedules {
+	
+	private static final int SIMILARITY_CACHE_CAPACITY = 1 << 19; //pairs
+	
+	public static void main(String[] args) throws ClassNotFoundException {
+		Class<? extends Text> textClass = TextWithWiki.class;
+		String textClassLabel = "with-wiki-concepts";
+		int numDatasets = -1;
+		
+		if(args.length == 2 || args.length == 3){
+			textClass = Class.forName(args[0]).asSubclass(Text.class);
+			textClassLabel = args[1];
+			if(args.length == 3){
+				numDatasets = Integer.parseInt(args[2]);
+			}
+		}else if(args.length != 0){
+			System.out.println("Usage:");
+			System.out.println("0 args or");
+			System.out.println("2 args: 'text_class' 'class_label' or");
+			System.out.println("3 args: 'text_class' 'class_label' 'num_datasets'");
+			return;
+		}
+		
+		Printer.printBigHeader("Flooding vs residual BP");
+		List<String> labels = Arrays.asList(new String[]{
+				"D07-1031", "J96-2004", "N06-1020", "P04-1015", "P05-1045", "W02-1011", "W06-1615",
+				"A92-1018", "J90-1003", "N03-1003", "P04-1035", "P07-1033", "W04-1013", "C98-2122",
+				"J93-1007", "N04-1035", "P02-1053", "P04-1041", "P90-1034", "W05-0909"});
+		if(numDatasets > -1){
+			labels = labels.subList(0, numDatasets);
+		}
+		compareSchedules(textClass, textClassLabel, labels);
+	}
+	
+	private static <T extends Text> void compareSchedules(Class<T> textClass, String afterLabelInFileName, List<String> labels){
+		File xmlDir = new File(Environment.resources(), "xml-datasets");
+		List<Dataset<T>> datasets;
+		try(DatasetLoader<T> loader = new DatasetLoader<T>(label -> DatasetBinary.load(textClass,
+				new File(xmlDir, label + "-" + afterLabelInFileName + ".xml"), 0),
+				Runtime.getRuntime().availableProcessors())){
+			datasets = loader.loadAll(labels);
+		}
+		
+		final int neighbourhood = 4;
+		final double beliefThreshold = 0.4;
+		final int maxRuns = 100;
+		MRF_params arrayParams = new MRF_params(neighbourhood, beliefThreshold, maxRuns)
+				.withMessageStore(MRF_params.MessageStore.ARRAY);
+		ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		SimilarityCache similarityCache = new SimilarityCache(SIMILARITY_CACHE_CAPACITY);
+		Function<Dataset<T>, SimilarityProvider<T>> similarities = dataset -> SimilarityProvider.cached(dataset, similarityCache);
+		
+		MRF_classifier<T> flooding = new MRF_classifier<T>(arrayParams.withSchedule(MRF_params.Schedule.FLOODING), similarities);
+		ArrayList<ResultImpl<T>> floodingResults = flooding.classify(datasets, pool);
+		MRF_classifier<T> residual = new MRF_classifier<T>(arrayParams.withSchedule(MRF_params.Schedule.RESIDUAL), similarities);
+		ArrayList<ResultImpl<T>> residualResults = residual.classify(datasets, pool);
+		Printer.printMultipleResults("MRF-flooding", floodingResults, datasets, false);
+		Printer.printMultipleResults("MRF-residual", residualResults, datasets, false);
+		long saved = flooding.getMessageUpdates() - residual.getMessageUpdates();
+		System.out.println("Message updates, flooding: " + flooding.getMessageUpdates());
+		System.out.println("Message updates, residual: " + residual.getMessageUpdates());
+		System.out.printf("Saved: %d (%.1f%%)\n", saved, 100.0 * saved / Math.max(1, flooding.getMessageUpdates()));
+		System.out.println(similarityCache);
+	}
+}
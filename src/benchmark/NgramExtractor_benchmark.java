@@ -0,0 +1,118 @@
+package benchmark;
+
+import gnu.trove.map.hash.TLongDoubleHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import dataset.CitingPaper;
+import dataset.Dataset;
+import dataset.NgramExtractor;
+import dataset.Sentence;
+import dataset.TextWithNgrams;
+
+/**
+ * JMH benchmarks of extracting the n-grams and skip-grams that NgramIdf counts, from the
+ * sentences (8-38 words) or the cited content (2000 words) of a synthetic dataset.
+ * tokenExtractor is NgramExtractor, and listExtractor the extraction it replaced (ListNgramExtractor).
+ * Both give the same counts. Run main() to also get allocation rates from the GC profiler.
+ * @author jonathan
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NgramExtractor_benchmark {
+	
+	@Param({"SENTENCES", "CITED_CONTENT"})
+	public Documents documents;
+	
+	private static final long SEED = 1;
+	private static final int NUM_SENTENCES = 1000;
+	private static final int MAX_N = 3;
+	private static final int MIN_SKIP = 0;
+	private static final int MAX_SKIP = 2;
+	
+	public enum Documents{
+		SENTENCES, CITED_CONTENT;
+	}
+	
+	private List<List<String>> words;
+	
+	@Setup(Level.Trial)
+	public void setupTrial(){
+		Dataset<TextWithNgrams> dataset = SyntheticDatasets.ngramsDataset(1, NUM_SENTENCES, SEED);
+		words = new ArrayList<List<String>>();
+		switch(documents){
+		case SENTENCES:
+			for(CitingPaper<TextWithNgrams> citer : dataset.citers){
+				for(Sentence<TextWithNgrams> sentence : citer.sentences){
+					words.add(sentence.text.lemmas);
+				}
+			}
+			break;
+		case CITED_CONTENT:
+			words.add(dataset.citedContent.lemmas);
+			break;
+		}
+	}
+	
+	@Benchmark
+	public int listExtractor(){
+		int numNgrams = 0;
+		for(List<String> documentWords : words){
+			numNgrams += size(ListNgramExtractor.allNgramKeys(MAX_N, documentWords));
+			numNgrams += size(ListNgramExtractor.allSkipgramKeys(MAX_N, MIN_SKIP, MAX_SKIP, documentWords));
+		}
+		return numNgrams;
+	}
+	
+	@Benchmark
+	public int tokenExtractor(){
+		int numNgrams = 0;
+		for(List<String> documentWords : words){
+			int[] tokens = NgramExtractor.tokens(documentWords);
+			numNgrams += size(NgramExtractor.allNgramKeys(MAX_N, tokens));
+			numNgrams += size(NgramExtractor.allSkipgramKeys(MAX_N, MIN_SKIP, MAX_SKIP, tokens));
+		}
+		return numNgrams;
+	}
+	
+	private static int size(List<TLongDoubleHashMap> counts){
+		int size = 0;
+		for(TLongDoubleHashMap nCounts : counts){
+			size += nCounts.size();
+		}
+		return size;
+	}
+	
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(NgramExtractor_benchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,71 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+
+import dataset.NgramIdf;
+
+/**
+ * Compares the peak heap of counting skip-gram idf exactly (NgramIdf.fromDocuments) and in two
+ * passes with a Count-Min sketch (NgramIdf.fromDocumentsTwoPass), on synthetic sentences, and
+ * checks that both keep the same skip-grams with the same counts.
+ * Args: [number of documents] [log2 of the sketch width]. Run with a fixed -Xmx, so that the
+ * garbage collector doesn't simply let the heap grow.
+ * @author jonathan
+ *
+ */
+public class SkipgramIdfMemory {
+	
+	private static final long SEED = 1;
+	
+	public static void main(String[] args) {
+		int numDocuments = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int sketchLog2Width = args.length > 1 ? Integer.parseInt(args[1]) : NgramIdf.DEFAULT_SKETCH_LOG2_WIDTH;
+		int minCount = NgramIdf.DEFAULT_SKIPGRAM_MIN_COUNT;
+		List<List<String>> documents = SyntheticDatasets.documents(numDocuments, SEED);
+		System.out.println(numDocuments + " documents, min count " + minCount + ", sketch: "
+				+ NgramIdf.DEFAULT_SKETCH_DEPTH + " x 2^" + sketchLog2Width);
+		
+		NgramIdf[] exact = new NgramIdf[1];
+		long exactPeak = peakHeap(() -> exact[0] = NgramIdf.fromDocuments(documents.stream(), NgramIdf.Type.SKIPGRAM)
+				.prune(minCount));
+		String exactXml = exact[0].toXml(minCount).toString();
+		exact[0] = null;
+		
+		NgramIdf[] twoPass = new NgramIdf[1];
+		long twoPassPeak = peakHeap(() -> twoPass[0] = NgramIdf.fromDocumentsTwoPass(() -> documents.stream(),
+				NgramIdf.Type.SKIPGRAM, minCount, NgramIdf.DEFAULT_SKETCH_DEPTH, sketchLog2Width));
+		String twoPassXml = twoPass[0].toXml(minCount).toString();
+		
+		System.out.println("kept skip-grams: " + twoPass[0].size(2) + " bigrams, " + twoPass[0].size(3) + " trigrams");
+		System.out.println("peak heap, exact:    " + exactPeak / (1 << 20) + " MB");
+		System.out.println("peak heap, two-pass: " + twoPassPeak / (1 << 20) + " MB");
+		System.out.println("same counts: " + exactXml.equals(twoPassXml));
+	}
+	
+	/**
+	 * @return the peak heap usage while running 'build', above what was used before it
+	 */
+	private static long peakHeap(Runnable build){
+		System.gc();
+		long before = 0;
+		for(MemoryPoolMXBean pool : heapPools()){
+			before += pool.getUsage().getUsed();
+			pool.resetPeakUsage();
+		}
+		build.run();
+		long peak = 0;
+		for(MemoryPoolMXBean pool : heapPools()){
+			peak += pool.getPeakUsage().getUsed();
+		}
+		return peak - before;
+	}
+	
+	private static Iterable<MemoryPoolMXBean> heapPools(){
+		return () -> ManagementFactory.getMemoryPoolMXBeans().stream()
+				.filter(pool -> pool.getType() == MemoryType.HEAP)
+				.iterator();
+	}
+}
@@ -0,0 +1,200 @@
+package benchmark;
+
+import gnu.trove.map.hash.TLongDoubleHashMap;
+import gnu.trove.set.hash.TIntHashSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import semanticSim.WikiConcept;
+import dataset.CitingPaper;
+import dataset.Dataset;
+import dataset.LexicalHook;
+import dataset.NgramVocabulary;
+import dataset.Ngrams;
+import dataset.Sentence;
+import dataset.SentenceType;
+import dataset.Text;
+import dataset.TextWithNgrams;
+import dataset.TextWithWiki;
+
+/**
+ * Generates datasets with random sentences, so that the classifiers can be benchmarked on
+ * citers of any length without the real data. Words are drawn from a Zipf-like distribution
+ * over a fixed vocabulary, so that neighbouring sentences have realistic, mostly small, similarities.
+ * The same seed always gives the same dataset.
+ * @author jonathan
+ *
+ */
+public class SyntheticDatasets {
+	
+	private static final String CITED_AUTHOR = "Smith";
+	private static final int VOCABULARY_SIZE = 5000;
+	private static final int NUM_WIKI_ARTICLES = 100000;
+	private static final int CONCEPTS_PER_WORD = 3;
+	private static final String[] FUNCTION_WORDS = new String[]{
+		"the", "a", "this", "their", "it", "however", "we", "they", "in", "of", "and", "to", "is", "for"
+	};
+	
+	public enum TextType{
+		NGRAMS, WIKI;
+	}
+	
+	public static Dataset<? extends Text> dataset(TextType textType, int numCiters, int sentencesPerCiter, long seed){
+		switch(textType){
+		case NGRAMS:
+			return ngramsDataset(numCiters, sentencesPerCiter, seed);
+		case WIKI:
+			return wikiDataset(numCiters, sentencesPerCiter, seed);
+		default:
+			throw new IllegalArgumentException(textType.toString());
+		}
+	}
+	
+	public static Dataset<TextWithNgrams> ngramsDataset(int numCiters, int sentencesPerCiter, long seed){
+		SyntheticDatasets generator = new SyntheticDatasets(seed);
+		List<CitingPaper<TextWithNgrams>> citers = new ArrayList<CitingPaper<TextWithNgrams>>();
+		for(int c = 0; c < numCiters; c++){
+			List<Sentence<TextWithNgrams>> sentences = new ArrayList<Sentence<TextWithNgrams>>();
+			for(int i = 0; i < sentencesPerCiter; i++){
+				SentenceType type = generator.sentenceType(i);
+				sentences.add(new Sentence<TextWithNgrams>(type, generator.ngramsText(generator.words(type)), i));
+			}
+			citers.add(new CitingPaper<TextWithNgrams>("Synthetic citer " + c, sentences));
+		}
+		TextWithNgrams title = generator.ngramsText(generator.words(SentenceType.NOT_REFERENCE));
+		TextWithNgrams content = generator.ngramsText(generator.manyWords(2000));
+		TextWithNgrams explicitCitations = generator.ngramsText(generator.manyWords(200));
+		return withAcronymsHooks(Dataset.full("synthetic-ngrams", CITED_AUTHOR, title, citers, content, explicitCitations));
+	}
+	
+	public static Dataset<TextWithWiki> wikiDataset(int numCiters, int sentencesPerCiter, long seed){
+		SyntheticDatasets generator = new SyntheticDatasets(seed);
+		List<CitingPaper<TextWithWiki>> citers = new ArrayList<CitingPaper<TextWithWiki>>();
+		for(int c = 0; c < numCiters; c++){
+			List<Sentence<TextWithWiki>> sentences = new ArrayList<Sentence<TextWithWiki>>();
+			for(int i = 0; i < sentencesPerCiter; i++){
+				SentenceType type = generator.sentenceType(i);
+				sentences.add(new Sentence<TextWithWiki>(type, generator.wikiText(generator.words(type)), i));
+			}
+			citers.add(new CitingPaper<TextWithWiki>("Synthetic citer " + c, sentences));
+		}
+		TextWithWiki title = generator.wikiText(generator.words(SentenceType.NOT_REFERENCE));
+		TextWithWiki content = generator.wikiText(generator.manyWords(2000));
+		TextWithWiki explicitCitations = generator.wikiText(generator.manyWords(200));
+		return withAcronymsHooks(Dataset.full("synthetic-wiki", CITED_AUTHOR, title, citers, content, explicitCitations));
+	}
+	
+	/**
+	 * Just the words of numDocuments sentences, as documents for NgramIdf.
+	 */
+	public static List<List<String>> documents(int numDocuments, long seed){
+		SyntheticDatasets generator = new SyntheticDatasets(seed);
+		List<List<String>> documents = new ArrayList<List<String>>(numDocuments);
+		for(int i = 0; i < numDocuments; i++){
+			documents.add(generator.words(SentenceType.NOT_REFERENCE));
+		}
+		return documents;
+	}
+	
+	private static <T extends Text> Dataset<T> withAcronymsHooks(Dataset<T> dataset){
+		dataset.addAcronymsHooks(
+				new ArrayList<String>(Arrays.asList("SMT", "CRF")), 
+				new ArrayList<LexicalHook>(Arrays.asList(new LexicalHook("Smith parser"))));
+		return dataset;
+	}
+	
+	private final Random random;
+	
+	private SyntheticDatasets(long seed){
+		random = new Random(seed);
+	}
+	
+	private SentenceType sentenceType(int sentenceIndex){
+		if(sentenceIndex == 0){
+			return SentenceType.NOT_REFERENCE; //an implicit reference must come after some other sentence
+		}
+		int r = random.nextInt(100);
+		if(r < 2){
+			return SentenceType.EXPLICIT_REFERENCE;
+		}
+		if(r < 5){
+			return SentenceType.IMPLICIT_REFERENCE;
+		}
+		return SentenceType.NOT_REFERENCE;
+	}
+	
+	private List<String> words(SentenceType type){
+		List<String> words = new ArrayList<String>();
+		if(type == SentenceType.EXPLICIT_REFERENCE){
+			words.addAll(Arrays.asList(CITED_AUTHOR, "et", "al.", "(", "2001", ")"));
+		}else if(type == SentenceType.IMPLICIT_REFERENCE && random.nextBoolean()){
+			words.addAll(Arrays.asList("this", "approach"));
+		}
+		int length = 8 + random.nextInt(25);
+		for(int i = 0; i < length; i++){
+			if(random.nextInt(3) == 0){
+				words.add(FUNCTION_WORDS[random.nextInt(FUNCTION_WORDS.length)]);
+			}else{
+				words.add(word());
+			}
+		}
+		return words;
+	}
+	
+	private List<String> manyWords(int length){
+		List<String> words = new ArrayList<String>();
+		for(int i = 0; i < length; i++){
+			words.add(word());
+		}
+		return words;
+	}
+	
+	/**
+	 * Word w has probability roughly proportional to 1 / (w + 1).
+	 */
+	private String word(){
+		int w = (int) Math.floor(Math.exp(random.nextDouble() * Math.log(VOCABULARY_SIZE + 1))) - 1;
+		return "w" + w;
+	}
+	
+	private TextWithNgrams ngramsText(List<String> words){
+		return new TextWithNgrams(String.join(" ", words), words, words, ngrams(words));
+	}
+	
+	private TextWithWiki wikiText(List<String> words){
+		List<WikiConcept> concepts = new ArrayList<WikiConcept>();
+		for(String word : words){
+			TIntHashSet indices = new TIntHashSet();
+			Random wordRandom = new Random(word.hashCode());
+			for(int i = 0; i < CONCEPTS_PER_WORD; i++){
+				indices.add(wordRandom.nextInt(NUM_WIKI_ARTICLES));
+			}
+			concepts.add(new WikiConcept(indices));
+		}
+		return new TextWithWiki(String.join(" ", words), words, words, ngrams(words), concepts);
+	}
+	
+	/**
+	 * Uni-, bi- and trigrams, weighted by a made up idf between log(2) and log(VOCABULARY_SIZE + 1),
+	 * derived from the hash code of the n-gram, so that it's the same for every occurrence.
+	 */
+	private static Ngrams ngrams(List<String> words){
+		NgramVocabulary vocabulary = NgramVocabulary.instance();
+		List<TLongDoubleHashMap> ngramMaps = new ArrayList<TLongDoubleHashMap>();
+		for(int n = 1; n <= 3; n++){
+			TLongDoubleHashMap map = new TLongDoubleHashMap();
+			for(int i = 0; i + n <= words.size(); i++){
+				map.adjustOrPutValue(vocabulary.key(words.subList(i, i + n)), 1, 1);
+			}
+			for(long ngram : map.keys()){
+				String text = vocabulary.ngram(ngram);
+				map.put(ngram, map.get(ngram) * Math.log(2 + Math.abs(text.hashCode() % VOCABULARY_SIZE)));
+			}
+			ngramMaps.add(map);
+		}
+		return new Ngrams(ngramMaps);
+	}
+}
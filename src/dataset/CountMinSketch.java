@@ -0,0 +1,63 @@
+package dataset;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Approximate counts of long keys in fixed memory: depth rows of width counters, where each
+ * key increments one counter per row, and its estimate is the smallest of them. Other keys
+ * can only add to a key's counters, so the estimate is never below the real count.
+ * Thread-safe.
+ * @author jonathan
+ *
+ */
+class CountMinSketch {
+	
+	private final int depth;
+	private final int log2Width;
+	private final AtomicIntegerArray counters; //row * width + column
+	private final long[] seeds;
+	
+	CountMinSketch(int depth, int log2Width){
+		if(log2Width < 1 || log2Width > 30 || ((long) depth << log2Width) > Integer.MAX_VALUE){
+			throw new IllegalArgumentException("depth: " + depth + ", log2Width: " + log2Width);
+		}
+		this.depth = depth;
+		this.log2Width = log2Width;
+		counters = new AtomicIntegerArray(depth << log2Width);
+		seeds = new long[depth];
+		for(int row = 0; row < depth; row++){
+			seeds[row] = mix(0x9e3779b97f4a7c15L * (row + 1));
+		}
+	}
+	
+	void add(long key){
+		for(int row = 0; row < depth; row++){
+			counters.incrementAndGet(index(row, key));
+		}
+	}
+	
+	int estimate(long key){
+		int estimate = Integer.MAX_VALUE;
+		for(int row = 0; row < depth; row++){
+			estimate = Math.min(estimate, counters.get(index(row, key)));
+		}
+		return estimate;
+	}
+	
+	private int index(int row, long key){
+		int column = (int) (mix(key ^ seeds[row]) >>> (Long.SIZE - log2Width));
+		return (row << log2Width) + column;
+	}
+	
+	/**
+	 * The finalizer of MurmurHash3
+	 */
+	private static long mix(long h){
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb93fe53a87c5L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
@@ -0,0 +1,536 @@
+package dataset;
+
+import gnu.trove.iterator.TLongDoubleIterator;
+import gnu.trove.map.hash.TLongDoubleHashMap;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import util.Printer;
+
+/**
+ * Datasets in a compact binary file, which is mapped into memory instead of parsed.
+ * The texts, n-grams and skip-grams that the XML stores are kept, but words are written
+ * once, in a string table, and referred to by varint ids. tf-idf scores are stored as doubles,
+ * so a dataset read from here gives exactly the similarities of its XML.
+ * Citers are decoded when they are first used, so that reading a file is quick and
+ * only the citers that are used take up memory. The file is (big-endian):
+ * MAGIC, the kind of texts, the string table, the label, main author, acronyms and lexical hooks,
+ * the merged explicit citations, cited title and cited content, all citers, the byte positions
+ * of the citers, and the position of those positions.
+ * Each n-gram map is columnar: its size, the words of every n-gram and then all scores.
+ * Only Text, TextWithNgrams, TextWithHashedNgrams and TextWithSkipgrams can be stored.
+ * @author jonathan
+ *
+ */
+public class DatasetBinary {
+	
+	private static final Printer printer = new Printer(true);
+	
+	private static final int MAGIC = 0x44535431; //"DST1"
+	public static final String FILE_SUFFIX = ".bin";
+	
+	private static final byte KIND_TEXT = 0;
+	private static final byte KIND_NGRAMS = 1;
+	private static final byte KIND_SKIPGRAMS = 2;
+	
+	/**
+	 * @return the binary file that belongs to an XML dataset: the same name, with FILE_SUFFIX
+	 * instead of .xml
+	 */
+	public static File binaryFile(File xmlFile){
+		String name = xmlFile.getName().replaceAll("\\.xml$", "");
+		return new File(xmlFile.getParentFile(), name + FILE_SUFFIX);
+	}
+	
+	public static boolean supports(Class<? extends Text> textClass){
+		return textClass.equals(Text.class) || textClass.equals(TextWithNgrams.class)
+				|| textClass.equals(TextWithHashedNgrams.class) || textClass.equals(TextWithSkipgrams.class);
+	}
+	
+	/**
+	 * Reads the binary file of the XML dataset if there is one that isn't older than the XML,
+	 * and otherwise parses the XML.
+	 */
+	public static <T extends Text> Dataset<T> load(Class<T> textClass, File xmlFile, int maxNumCiters){
+		File binaryFile = binaryFile(xmlFile);
+		if(supports(textClass) && binaryFile.exists() && binaryFile.lastModified() >= xmlFile.lastModified()){
+			return read(textClass, binaryFile, maxNumCiters);
+		}
+		return DatasetXml.parseXmlFile(textClass, xmlFile, maxNumCiters);
+	}
+	
+	public static <T extends Text> void convert(Class<T> textClass, File xmlFile, File binaryFile){
+		write(DatasetXml.parseXmlFile(textClass, xmlFile, 0), binaryFile);
+	}
+	
+	public static <T extends Text> void write(Dataset<T> dataset, File file){
+		printer.print("Writing binary dataset " + dataset.datasetLabel + " to " + file.getPath() + " ... ");
+		byte kind = kind(dataset.mergedExplicitCitations.getClass());
+		List<T> texts = new ArrayList<T>();
+		texts.add(dataset.mergedExplicitCitations);
+		texts.add(dataset.citedTitle);
+		if(dataset.citedContent != null){
+			texts.add(dataset.citedContent);
+		}
+		for(CitingPaper<T> citer : dataset.citers){
+			for(Sentence<T> sentence : citer.sentences){
+				texts.add(sentence.text);
+			}
+		}
+		Map<String, Integer> wordIds = new LinkedHashMap<String, Integer>();
+		for(T text : texts){
+			if(kind(text.getClass()) != kind){
+				throw new IllegalArgumentException("Mixed text classes: " + text.getClass());
+			}
+			addWords(text, kind, wordIds);
+		}
+		
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))){
+			Encoder encoder = new Encoder(out, wordIds);
+			out.writeInt(MAGIC);
+			out.writeByte(kind);
+			encoder.varint(wordIds.size());
+			for(String word : wordIds.keySet()){
+				encoder.string(word);
+			}
+			encoder.string(dataset.datasetLabel);
+			encoder.string(dataset.citedMainAuthor);
+			out.writeBoolean(dataset.hasAcronymsHooks);
+			if(dataset.hasAcronymsHooks){
+				encoder.varint(dataset.getAcronyms().size());
+				for(String acronym : dataset.getAcronyms()){
+					encoder.string(acronym);
+				}
+				encoder.varint(dataset.getLexicalHooks().size());
+				for(LexicalHook hook : dataset.getLexicalHooks()){
+					encoder.string(hook.hook);
+				}
+			}
+			encoder.text(dataset.mergedExplicitCitations, kind);
+			encoder.text(dataset.citedTitle, kind);
+			out.writeBoolean(dataset.citedContent != null);
+			if(dataset.citedContent != null){
+				encoder.text(dataset.citedContent, kind);
+			}
+			
+			int[] citerPositions = new int[dataset.citers.size()];
+			for(int i = 0; i < citerPositions.length; i++){
+				citerPositions[i] = out.size();
+				CitingPaper<T> citer = dataset.citers.get(i);
+				encoder.string(citer.title);
+				encoder.varint(citer.sentences.size());
+				for(Sentence<T> sentence : citer.sentences){
+					out.writeByte(sentence.type.ordinal());
+					encoder.text(sentence.text, kind);
+				}
+			}
+			int indexPosition = out.size();
+			out.writeInt(citerPositions.length);
+			for(int position : citerPositions){
+				out.writeInt(position);
+			}
+			out.writeInt(indexPosition);
+			if(out.size() == Integer.MAX_VALUE){ //where DataOutputStream.size() stops counting
+				throw new IllegalArgumentException("Too large for a binary dataset: " + dataset.datasetLabel);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(0);
+		}
+		printer.println("[x]");
+	}
+	
+	private static byte kind(Class<?> textClass){
+		if(textClass.equals(Text.class)){
+			return KIND_TEXT;
+		}else if(textClass.equals(TextWithNgrams.class) || textClass.equals(TextWithHashedNgrams.class)){
+			return KIND_NGRAMS;
+		}else if(textClass.equals(TextWithSkipgrams.class)){
+			return KIND_SKIPGRAMS;
+		}else{
+			throw new IllegalArgumentException("Text-class can't be stored in a binary dataset: " + textClass);
+		}
+	}
+	
+	private static void addWords(Text text, byte kind, Map<String, Integer> wordIds){
+		for(String word : text.rawWords){
+			wordIds.putIfAbsent(word, wordIds.size());
+		}
+		for(String word : text.lemmas){
+			wordIds.putIfAbsent(word, wordIds.size());
+		}
+		if(kind >= KIND_NGRAMS){
+			addWords(((TextWithNgrams) text).ngramsTfIdf, wordIds);
+		}
+		if(kind == KIND_SKIPGRAMS){
+			addWords(((TextWithSkipgrams) text).skipgramsTfIdf, wordIds);
+		}
+	}
+	
+	private static void addWords(Ngrams ngrams, Map<String, Integer> wordIds){
+		NgramVocabulary vocabulary = NgramVocabulary.instance();
+		for(int n = 1; n <= ngrams.maxN(); n++){
+			for(long key : ngrams.map(n).keys()){
+				for(; key != 0; key >>>= NgramVocabulary.BITS_PER_WORD){
+					wordIds.putIfAbsent(vocabulary.word(lastWordId(key)), wordIds.size());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return the vocabulary id of the last word of the n-gram
+	 */
+	private static int lastWordId(long key){
+		return (int) (key & ((1 << NgramVocabulary.BITS_PER_WORD) - 1));
+	}
+	
+	/**
+	 * Maps the file and reads everything but the citers, which are decoded when first used.
+	 * @param maxNumCiters 0 means unlimited
+	 */
+	public static <T extends Text> Dataset<T> read(Class<T> textClass, File file, int maxNumCiters){
+		printer.print("Mapping binary dataset (" + textClass + ") from " + file.getPath() + " ... ");
+		MappedByteBuffer buffer;
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+			if(channel.size() > Integer.MAX_VALUE){
+				throw new IllegalArgumentException("Not a binary dataset: " + file);
+			}
+			buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(0);
+			return null;
+		}
+		if(buffer.capacity() < 5 || buffer.getInt(0) != MAGIC){
+			throw new IllegalArgumentException("Not a binary dataset: " + file);
+		}
+		Decoder decoder = new Decoder(buffer, 4);
+		byte kind = decoder.buffer.get();
+		String[] words = new String[decoder.varint()];
+		for(int i = 0; i < words.length; i++){
+			words[i] = decoder.string();
+		}
+		Contents<T> contents = new Contents<T>(textClass, kind, buffer, words);
+		
+		String label = decoder.string();
+		String mainAuthor = decoder.string();
+		List<String> acronyms = null;
+		List<LexicalHook> lexicalHooks = null;
+		if(decoder.buffer.get() != 0){
+			acronyms = new ArrayList<String>();
+			for(int i = decoder.varint(); i > 0; i--){
+				acronyms.add(decoder.string());
+			}
+			lexicalHooks = new ArrayList<LexicalHook>();
+			for(int i = decoder.varint(); i > 0; i--){
+				lexicalHooks.add(new LexicalHook(decoder.string()));
+			}
+		}
+		T mergedExplicit = contents.text(decoder);
+		T citedTitle = contents.text(decoder);
+		T citedContent = decoder.buffer.get() != 0 ? contents.text(decoder) : null;
+		
+		int indexPosition = buffer.getInt(buffer.capacity() - 4);
+		int numCiters = buffer.getInt(indexPosition);
+		if(maxNumCiters > 0){
+			numCiters = Math.min(numCiters, maxNumCiters);
+		}
+		int[] citerPositions = new int[numCiters];
+		for(int i = 0; i < numCiters; i++){
+			citerPositions[i] = buffer.getInt(indexPosition + 4 + 4 * i);
+		}
+		
+		Dataset<T> dataset = Dataset.full(label, mainAuthor, citedTitle, new LazyCiters<T>(contents, citerPositions),
+				citedContent, mergedExplicit);
+		if(acronyms != null){
+			dataset.addAcronymsHooks(acronyms, lexicalHooks);
+		}
+		printer.println("[x]");
+		return dataset;
+	}
+	
+	/**
+	 * Citers that are decoded from the file when first asked for, and then kept, so that
+	 * their texts stay the same objects (see Text.id). Thread-safe: if several threads decode
+	 * the same citer at once, all of them get the one that was stored first.
+	 */
+	private static class LazyCiters<T extends Text> extends AbstractList<CitingPaper<T>> implements RandomAccess {
+		
+		private final Contents<T> contents;
+		private final int[] positions;
+		private final AtomicReferenceArray<CitingPaper<T>> citers;
+		
+		LazyCiters(Contents<T> contents, int[] positions){
+			this.contents = contents;
+			this.positions = positions;
+			citers = new AtomicReferenceArray<CitingPaper<T>>(positions.length);
+		}
+		
+		@Override
+		public CitingPaper<T> get(int index){
+			CitingPaper<T> citer = citers.get(index);
+			if(citer == null){
+				citers.compareAndSet(index, null, contents.citer(positions[index]));
+				citer = citers.get(index);
+			}
+			return citer;
+		}
+		
+		@Override
+		public int size(){
+			return positions.length;
+		}
+	}
+	
+	/**
+	 * What's needed to decode texts from a mapped file.
+	 */
+	private static class Contents<T extends Text> {
+		
+		private final Class<T> textClass;
+		private final byte kind;
+		private final ByteBuffer buffer;
+		private final String[] words;
+		private final int[] vocabularyIds; //by word, 0 until the word is found in an n-gram
+		
+		Contents(Class<T> textClass, byte kind, ByteBuffer buffer, String[] words){
+			if(!supports(textClass) || kind(textClass) > kind){
+				throw new IllegalArgumentException("Can't read " + textClass + " from a binary dataset of kind " + kind);
+			}
+			this.textClass = textClass;
+			this.kind = kind;
+			this.buffer = buffer;
+			this.words = words;
+			vocabularyIds = new int[textClass.equals(Text.class) ? 0 : words.length];
+		}
+		
+		/**
+		 * Only words of n-grams are added to the vocabulary, which is shared by the whole process,
+		 * not the raw words and lemmas. Several threads may look up the same word at once, and
+		 * then all get the same id.
+		 */
+		private int vocabularyId(int word){
+			int id = vocabularyIds[word];
+			if(id == 0){
+				id = NgramVocabulary.instance().id(words[word]);
+				vocabularyIds[word] = id;
+			}
+			return id;
+		}
+		
+		CitingPaper<T> citer(int position){
+			Decoder decoder = new Decoder(buffer, position);
+			String title = decoder.string();
+			int numSentences = decoder.varint();
+			List<Sentence<T>> sentences = new ArrayList<Sentence<T>>(numSentences);
+			for(int i = 0; i < numSentences; i++){
+				SentenceType type = SentenceType.values()[decoder.buffer.get()];
+				sentences.add(new Sentence<T>(type, text(decoder), i));
+			}
+			return new CitingPaper<T>(title, sentences);
+		}
+		
+		@SuppressWarnings("unchecked")
+		T text(Decoder decoder){
+			String raw = decoder.string();
+			ArrayList<String> rawWords = words(decoder);
+			ArrayList<String> lemmas = words(decoder);
+			if(textClass.equals(Text.class)){
+				if(kind >= KIND_NGRAMS){
+					skipNgrams(decoder);
+				}
+				if(kind == KIND_SKIPGRAMS){
+					skipNgrams(decoder);
+				}
+				return (T) new Text(raw, rawWords, lemmas);
+			}
+			Ngrams ngramsTfIdf = ngrams(decoder);
+			if(textClass.equals(TextWithSkipgrams.class)){
+				return (T) new TextWithSkipgrams(raw, rawWords, lemmas, ngramsTfIdf, ngrams(decoder));
+			}
+			if(kind == KIND_SKIPGRAMS){
+				skipNgrams(decoder);
+			}
+			if(textClass.equals(TextWithHashedNgrams.class)){
+				return (T) new TextWithHashedNgrams(raw, rawWords, lemmas, ngramsTfIdf);
+			}
+			return (T) new TextWithNgrams(raw, rawWords, lemmas, ngramsTfIdf);
+		}
+		
+		private ArrayList<String> words(Decoder decoder){
+			int size = decoder.varint();
+			ArrayList<String> list = new ArrayList<String>(size);
+			for(int i = 0; i < size; i++){
+				list.add(words[decoder.varint()]);
+			}
+			return list;
+		}
+		
+		private Ngrams ngrams(Decoder decoder){
+			int numMaps = decoder.varint();
+			List<TLongDoubleHashMap> maps = new ArrayList<TLongDoubleHashMap>(numMaps);
+			for(int i = 0; i < numMaps; i++){
+				int size = decoder.varint();
+				long[] keys = new long[size];
+				for(int j = 0; j < size; j++){
+					long key = 0;
+					for(int numWords = decoder.varint(); numWords > 0; numWords--){
+						key = NgramVocabulary.append(key, vocabularyId(decoder.varint()));
+					}
+					keys[j] = key;
+				}
+				TLongDoubleHashMap map = new TLongDoubleHashMap(size);
+				for(int j = 0; j < size; j++){
+					map.put(keys[j], decoder.buffer.getDouble());
+				}
+				maps.add(map);
+			}
+			return new Ngrams(maps);
+		}
+		
+		private static void skipNgrams(Decoder decoder){
+			for(int numMaps = decoder.varint(); numMaps > 0; numMaps--){
+				int size = decoder.varint();
+				for(int j = 0; j < size; j++){
+					for(int numWords = decoder.varint(); numWords > 0; numWords--){
+						decoder.varint();
+					}
+				}
+				decoder.buffer.position(decoder.buffer.position() + 8 * size);
+			}
+		}
+	}
+	
+	/**
+	 * Reads from its own view of the buffer, so that several threads can decode at once.
+	 */
+	private static class Decoder {
+		
+		final ByteBuffer buffer;
+		
+		Decoder(ByteBuffer buffer, int position){
+			this.buffer = buffer.duplicate();
+			this.buffer.position(position);
+		}
+		
+		int varint(){
+			int value = 0;
+			for(int shift = 0; ; shift += 7){
+				byte b = buffer.get();
+				value |= (b & 0x7f) << shift;
+				if(b >= 0){
+					return value;
+				}
+			}
+		}
+		
+		String string(){
+			byte[] bytes = new byte[varint()];
+			buffer.get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+	}
+	
+	private static class Encoder {
+		
+		private final DataOutputStream out;
+		private final Map<String, Integer> wordIds;
+		private final Map<Integer, Integer> wordIdsByVocabularyId = new HashMap<Integer, Integer>();
+		
+		Encoder(DataOutputStream out, Map<String, Integer> wordIds){
+			this.out = out;
+			this.wordIds = wordIds;
+		}
+		
+		void varint(int value) throws IOException{
+			while((value & ~0x7f) != 0){
+				out.writeByte((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			out.writeByte(value);
+		}
+		
+		void string(String s) throws IOException{
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			varint(bytes.length);
+			out.write(bytes);
+		}
+		
+		void text(Text text, byte kind) throws IOException{
+			string(text.raw == null ? "" : text.raw);
+			words(text.rawWords);
+			words(text.lemmas);
+			if(kind >= KIND_NGRAMS){
+				ngrams(((TextWithNgrams) text).ngramsTfIdf);
+			}
+			if(kind == KIND_SKIPGRAMS){
+				ngrams(((TextWithSkipgrams) text).skipgramsTfIdf);
+			}
+		}
+		
+		private void words(List<String> words) throws IOException{
+			varint(words.size());
+			for(String word : words){
+				varint(wordIds.get(word));
+			}
+		}
+		
+		private void ngrams(Ngrams ngrams) throws IOException{
+			varint(ngrams.maxN());
+			for(int n = 1; n <= ngrams.maxN(); n++){
+				TLongDoubleHashMap map = ngrams.map(n);
+				double[] values = new double[map.size()];
+				varint(map.size());
+				TLongDoubleIterator it = map.iterator();
+				for(int i = 0; it.hasNext(); i++){
+					it.advance();
+					ngramWords(it.key());
+					values[i] = it.value();
+				}
+				for(double value : values){
+					out.writeDouble(value);
+				}
+			}
+		}
+		
+		/**
+		 * The number of words, and then their ids from the first word to the last
+		 */
+		private void ngramWords(long key) throws IOException{
+			int numWords = (Long.SIZE - Long.numberOfLeadingZeros(key) + NgramVocabulary.BITS_PER_WORD - 1)
+					/ NgramVocabulary.BITS_PER_WORD;
+			varint(numWords);
+			for(int i = numWords - 1; i >= 0; i--){
+				varint(tableId(lastWordId(key >>> (i * NgramVocabulary.BITS_PER_WORD))));
+			}
+		}
+		
+		private int tableId(int vocabularyId){
+			Integer id = wordIdsByVocabularyId.get(vocabularyId);
+			if(id == null){
+				id = wordIds.get(NgramVocabulary.instance().word(vocabularyId));
+				wordIdsByVocabularyId.put(vocabularyId, id);
+			}
+			return id;
+		}
+	}
+}
@@ -3,15 +3,19 @@ package dataset;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.nodes.Node;
-import org.jsoup.select.Elements;
 
+import util.Lemmatizer;
 import util.Printer;
 import util.Timer;
 
@@ -25,32 +29,143 @@ public class DatasetFactory {
 	
 	private static Printer printer = new Printer(true);
 	
-	private static String getTypeFromClassAttr(String classes){
-		return classes.split(" ")[1];
-	}
+	private static final int CITED_CONTENT_MAX_LINES = -1;
 	
 	public static <T extends Text> ArrayList<Dataset<T>> fromHtmlDir(DatasetParams<T> params, File dir){
-		ArrayList<Dataset<T>> datasets = new ArrayList<Dataset<T>>();
-		File[] files = dir.listFiles();
+		return fromHtmlDir(params, dir, PipelineParams.defaults());
+	}
+	
+	/**
+	 * Creates the datasets of all HTML-files in the directory in a pipeline, where every stage
+	 * has its own threads: parsing the HTML, splitting it into sentences, lemmatizing, creating
+	 * the texts (features), and putting the datasets together. So the next file is parsed while 
+	 * the sentences of the previous ones are lemmatized, and sentences of several files are
+	 * lemmatized at once. The datasets are returned in the order of the files, and the 
+	 * sentences in the order of their citers, as with fromHtmlFile().
+	 */
+	public static <T extends Text> ArrayList<Dataset<T>> fromHtmlDir(DatasetParams<T> params, File dir, 
+			PipelineParams pipelineParams){
+		List<File> htmlFiles = Arrays.stream(dir.listFiles())
+				.filter(file -> file.getName().endsWith(".html"))
+				.collect(Collectors.toList());
 		Timer t = new Timer();
 		printer.println("\n-----------------------------------------");
 		printer.println("CREATING DATASETS FROM DIR: " + dir.getAbsolutePath() + ": ");
 		printer.println("-----------------------------------------");
-		for(int i = 0; i < files.length; i++){
-			File htmlFile = files[i];
-			if(!htmlFile.getName().endsWith(".html")){
-				continue;
-			}
+		Lemmatizer.instance(); //Loaded once, before the threads need it
+		
+		Pipeline pipeline = new Pipeline();
+		BlockingQueue<Object> files = pipeline.source(IntStream.range(0, htmlFiles.size()).boxed().collect(Collectors.toList()));
+		//A parsed document is large, so only one waits for each splitting thread
+		BlockingQueue<Object> documents = pipeline.<Integer, ParsedHtml>stage("parse-html", pipelineParams.parseThreads, 
+				files, pipelineParams.splitThreads, (fileIndex, emit) -> {
+			File htmlFile = htmlFiles.get(fileIndex);
 			String baseName = htmlFile.getName().substring(0, htmlFile.getName().length()-5);
-			File textFile = new File(dir, baseName + ".txt");
-			datasets.add(fromFiles(params, htmlFile, textFile));
+			String citedContent = TextUtil.readTextFile(new File(dir, baseName + ".txt"), CITED_CONTENT_MAX_LINES);
+			emit.accept(new ParsedHtml(fileIndex, baseName, parseHtml(htmlFile), citedContent));
+		});
+		BlockingQueue<Object> rawTexts = pipeline.<ParsedHtml, TextInProgress<T>>stage("split-sentences", pipelineParams.splitThreads, 
+				documents, pipelineParams.queueCapacity, (parsed, emit) -> {
+			RawDataset raw = RawDataset.fromHtml(parsed.label, parsed.doc, parsed.citedContent);
+			DatasetInProgress<T> dataset = new DatasetInProgress<T>(parsed.fileIndex, raw);
+			for(int i = 0; i < raw.numTexts(); i++){
+				emit.accept(new TextInProgress<T>(dataset, i));
+			}
+		});
+		BlockingQueue<Object> lemmatizedTexts = pipeline.<TextInProgress<T>, TextInProgress<T>>stage("lemmatize", 
+				pipelineParams.lemmatizeThreads, rawTexts, pipelineParams.queueCapacity, (text, emit) -> {
+			text.lemmas = Lemmatizer.instance().lemmatize(text.raw());
+			emit.accept(text);
+		});
+		BlockingQueue<Object> finishedDatasets = pipeline.<TextInProgress<T>, DatasetInProgress<T>>stage("create-texts", 
+				pipelineParams.featureThreads, lemmatizedTexts, pipelineParams.queueCapacity, (text, emit) -> {
+			if(text.dataset.set(text.textIndex, TextFactory.createText(params.textParams, text.raw(), text.lemmas))){
+				emit.accept(text.dataset);
+			}
+		});
+		ArrayList<Dataset<T>> datasets = new ArrayList<Dataset<T>>(Collections.nCopies(htmlFiles.size(), null));
+		pipeline.start();
+		try{
+			DatasetInProgress<T> finished;
+			while((finished = pipeline.take(finishedDatasets)) != null){
+				Dataset<T> dataset = finished.raw.toDataset(finished.texts());
+				printer.println("Created dataset from HTML (" + dataset.datasetLabel + ")  {" + dataset.citers.size() 
+						+ " citers, in total " + finished.raw.numSentences() + " sentences}");
+				if(params.withAcronymsHooks){
+					dataset = dataset.findAcronymsHooks(params.authorProxyBoundary, params.numLexicalHooks, params.numAcronyms);
+				}
+				datasets.set(finished.fileIndex, dataset);
+			}
+		}finally{
+			pipeline.stop(); //also if creating a dataset here failed, so that no thread waits on a full queue
 		}
 		printer.println("Created datasets from dir (" + t.getSecString() + ")");
 		return datasets;
 	}
 	
+	private static class ParsedHtml {
+		final int fileIndex;
+		final String label;
+		final Document doc;
+		final String citedContent;
+		
+		ParsedHtml(int fileIndex, String label, Document doc, String citedContent){
+			this.fileIndex = fileIndex;
+			this.label = label;
+			this.doc = doc;
+			this.citedContent = citedContent;
+		}
+	}
+	
+	/**
+	 * The texts of a dataset, which are created by several threads. 
+	 */
+	private static class DatasetInProgress<T extends Text> {
+		final int fileIndex;
+		final RawDataset raw;
+		private final AtomicReferenceArray<T> texts;
+		private final AtomicInteger remaining;
+		
+		DatasetInProgress(int fileIndex, RawDataset raw){
+			this.fileIndex = fileIndex;
+			this.raw = raw;
+			texts = new AtomicReferenceArray<T>(raw.numTexts());
+			remaining = new AtomicInteger(raw.numTexts());
+		}
+		
+		/**
+		 * @return whether this was the last text
+		 */
+		boolean set(int textIndex, T text){
+			texts.set(textIndex, text);
+			return remaining.decrementAndGet() == 0;
+		}
+		
+		List<T> texts(){
+			List<T> list = new ArrayList<T>(texts.length());
+			for(int i = 0; i < texts.length(); i++){
+				list.add(texts.get(i));
+			}
+			return list;
+		}
+	}
+	
+	private static class TextInProgress<T extends Text> {
+		final DatasetInProgress<T> dataset;
+		final int textIndex;
+		List<String> lemmas;
+		
+		TextInProgress(DatasetInProgress<T> dataset, int textIndex){
+			this.dataset = dataset;
+			this.textIndex = textIndex;
+		}
+		
+		String raw(){
+			return dataset.raw.raw(textIndex);
+		}
+	}
+	
 	public static <T extends Text> Dataset<T> fromFiles(DatasetParams<T> params, File htmlFile, File citedContentTextFile){
-		final int CITED_CONTENT_MAX_LINES = -1;
 		String text = TextUtil.readTextFile(citedContentTextFile, CITED_CONTENT_MAX_LINES);
 		Dataset<T> dataset = fromHtmlFile(params, htmlFile, text);
 		return dataset;
@@ -61,10 +176,14 @@ public class DatasetFactory {
 	 * Returns incomplete dataset. cited-content missing
 	 */
 	public static <T extends Text> Dataset<T> fromHtmlFile(DatasetParams<T> params, File htmlFile, String citedContent){
+		Document doc = parseHtml(htmlFile);
+		String datasetLabel = htmlFile.getName().substring(0, htmlFile.getName().length() - 5);
+		return fromHtml(params, datasetLabel, doc, citedContent);
+	}
+	
+	private static Document parseHtml(File htmlFile){
 		try {
-			Document doc = Jsoup.parse(htmlFile, null);
-			String datasetLabel = htmlFile.getName().substring(0, htmlFile.getName().length() - 5);
-			return fromHtml(params, datasetLabel, doc, citedContent);
+			return Jsoup.parse(htmlFile, null);
 		} catch (IOException e) {
 			e.printStackTrace();
 			System.exit(0);
@@ -75,44 +194,15 @@ public class DatasetFactory {
 	public static <T extends Text> Dataset<T> fromHtml(DatasetParams<T> params, String label, Document doc, String citedContent){
 		Timer t = new Timer();
 		printer.print("Creating dataset from HTML (" + label + ") ... ");
-		String citedTitle = doc.select(".dstPaperTitle").get(0).text();
-		String[] citedAuthors = doc.select(".dstPaperAuthors").get(0).text().split(";");
-		String mainAuthorLastName = citedAuthors[0].split(",")[0];
-		
-		List<CitingPaper<T>> citers = new ArrayList<CitingPaper<T>>();
-		
-		Elements citerElements = doc.select("table.srcPaper > tbody > tr");
-		StringBuilder mergedExplicitCitations = new StringBuilder();
+		RawDataset raw = RawDataset.fromHtml(label, doc, citedContent);
+		List<T> texts = new ArrayList<T>(raw.numTexts());
 		printer.resetProgress();
-		for(Element citer : citerElements){
-			printer.progress();
-			List<Sentence<T>> sentences = new ArrayList<Sentence<T>>();
-			String citerTitle = citer.childNode(1).attr("title");
-			int sentenceIndex = 0;
-			for(int i = 3; i < citer.childNodeSize(); i+= 2){
-				Node line = citer.childNode(i);
-				String sentiment = getTypeFromClassAttr(line.attr("class"));
-				String rawText = line.attr("title").split("\t")[1].trim().replaceAll(" +", " ");
-				Sentence<T> sentence = new Sentence<T>(sentiment, TextFactory.createText(params.textParams, rawText), sentenceIndex);
-				if(isStartOfReferencesSection(sentence.text.raw)){
-					printer.println("'" + citerTitle + "' reached start of references at " + i + " / " + citer.childNodeSize());
-					break;
-				}
-				sentences.add(sentence);
-				if(sentence.type == SentenceType.EXPLICIT_REFERENCE){
-					mergedExplicitCitations.append(rawText + "\n");
-				}
-				sentenceIndex ++;
-			}
-			citers.add(new CitingPaper<T>(citerTitle, sentences));
+		for(int i = 0; i < raw.numTexts(); i++){
+			printer.progress(100);
+			texts.add(TextFactory.createText(params.textParams, raw.raw(i)));
 		}
-		
-		T citedTitleText = TextFactory.createText(params.textParams, citedTitle);
-		T mergedExplicitCitationsText = TextFactory.createText(params.textParams, mergedExplicitCitations.toString());
-		Dataset<T> dataset = Dataset.withoutCitedData(label, mainAuthorLastName, citedTitleText, citers, mergedExplicitCitationsText);
-		dataset.citedContent = TextFactory.createText(params.textParams, citedContent);
-		int numSentences = citers.stream().map(c -> c.sentences.size()).reduce(0, (x,y) -> x+y);
-		printer.println("[x]  (" + t.getSecString() + ")  {" + dataset.citers.size() + " citers, in total " + numSentences + " sentences}");
+		Dataset<T> dataset = raw.toDataset(texts);
+		printer.println("[x]  (" + t.getSecString() + ")  {" + dataset.citers.size() + " citers, in total " + raw.numSentences() + " sentences}");
 		if(params.withAcronymsHooks){
 			dataset = dataset.findAcronymsHooks(params.authorProxyBoundary, params.numLexicalHooks, params.numAcronyms);
 		}
@@ -0,0 +1,117 @@
+package dataset;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Loads the datasets of several labels at the same time, on a fixed number of threads.
+ * Parsing a dataset is independent of the others and mostly CPU-bound, so they can be loaded
+ * in parallel, or while the previous one is being classified (see prefetching()).
+ * Datasets are always returned in the order of their labels.
+ * @author jonathan
+ *
+ * @param <T>
+ */
+public class DatasetLoader<T extends Text> implements AutoCloseable {
+	
+	private final Function<String, Dataset<T>> load;
+	private final ExecutorService executor;
+	
+	/**
+	 * @param load gives the dataset of a label, e.g. with DatasetBinary.load(). Is called from
+	 * several threads at once.
+	 */
+	public DatasetLoader(Function<String, Dataset<T>> load, int numThreads){
+		if(numThreads < 1){
+			throw new IllegalArgumentException("numThreads: " + numThreads);
+		}
+		this.load = load;
+		executor = Executors.newFixedThreadPool(numThreads, runnable -> {
+			Thread thread = new Thread(runnable, "dataset-loader");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	
+	/**
+	 * Loads all datasets, and waits for them.
+	 */
+	public List<Dataset<T>> loadAll(List<String> labels){
+		List<Future<Dataset<T>>> futures = new ArrayList<Future<Dataset<T>>>();
+		for(String label : labels){
+			futures.add(submit(label));
+		}
+		List<Dataset<T>> datasets = new ArrayList<Dataset<T>>();
+		for(Future<Dataset<T>> future : futures){
+			datasets.add(get(future));
+		}
+		return datasets;
+	}
+	
+	/**
+	 * Loads the datasets as they are iterated over, at most 'prefetch' of them ahead of the
+	 * one that is returned, so that the next datasets are loaded while the caller works on
+	 * the current one. Only those datasets are kept, not the ones that were already returned.
+	 * @param prefetch 0 loads each dataset when it's asked for
+	 */
+	public Iterable<Dataset<T>> prefetching(List<String> labels, int prefetch){
+		if(prefetch < 0){
+			throw new IllegalArgumentException("prefetch: " + prefetch);
+		}
+		return () -> new Iterator<Dataset<T>>(){
+			private final Iterator<String> nextLabels = labels.iterator();
+			private final Deque<Future<Dataset<T>>> loading = new ArrayDeque<Future<Dataset<T>>>();
+			
+			@Override
+			public boolean hasNext(){
+				return !loading.isEmpty() || nextLabels.hasNext();
+			}
+			
+			@Override
+			public Dataset<T> next(){
+				if(!hasNext()){
+					throw new NoSuchElementException();
+				}
+				while(loading.size() <= prefetch && nextLabels.hasNext()){
+					loading.add(submit(nextLabels.next()));
+				}
+				return get(loading.poll());
+			}
+		};
+	}
+	
+	private Future<Dataset<T>> submit(String label){
+		return executor.submit(() -> load.apply(label));
+	}
+	
+	private static <T extends Text> Dataset<T> get(Future<Dataset<T>> future){
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while loading a dataset", e);
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException){
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException("Couldn't load a dataset", e.getCause());
+		}
+	}
+	
+	/**
+	 * Stops the threads. Datasets that are being loaded are still finished.
+	 */
+	@Override
+	public void close(){
+		executor.shutdown();
+	}
+}
@@ -1,23 +1,33 @@
 package dataset;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.jsoup.Jsoup;
+import org.jsoup.nodes.Attribute;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
 import org.jsoup.parser.Parser;
 import org.jsoup.parser.Tag;
 
@@ -40,7 +50,7 @@ public class DatasetXml {
 	
 	private static final String TAG_DATASET = "dataset";
 	private static final String TAG_ACRONYMS = "acronyms";
-	private static final String TAG_LEXICAL_HOOKS = "lexicalHooks";
+	private static final String TAG_LEXICAL_HOOKS = "lexicalhooks"; //Jsoup writes tag names in lower case
 	private static final String TAG_LEXICAL_HOOK = "hook";
 	private static final String TAG_DATASET_LABEL = "label";
 	private static final String TAG_MERGED_EXPLICIT = "merged-explicit-citatations";
@@ -57,6 +67,123 @@ public class DatasetXml {
 	private static final String ATTR_SENTENCE_TYPE = "type";
 	
 	public static <T extends Text> void writeToXml(Dataset<T> dataset, File file){
+		writeToXmlStream(dataset, file);
+	}
+	
+	/**
+	 * Writes the dataset with StAX, text by text, instead of building one Jsoup document and one
+	 * String for all of it. Only the element of the text being written is built (with toXml() of 
+	 * the text class), so memory is bounded by the largest text. The file can be read by both
+	 * parseQuick() and parseXmlFileWithDom().
+	 */
+	public static <T extends Text> void writeToXmlStream(Dataset<T> dataset, File file){
+		printer.print("Streaming XML for " + dataset.datasetLabel + " to " + file.getPath() + " ... ");
+		XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+		try(OutputStream out = new BufferedOutputStream(new FileOutputStream(file))){
+			XMLStreamWriter writer = outputFactory.createXMLStreamWriter(out, StandardCharsets.UTF_8.name());
+			try{
+				writer.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+				writeDataset(dataset, writer);
+				writer.writeEndDocument();
+			}finally{
+				writer.close();
+			}
+			printer.println("[x]");
+		} catch (IOException | XMLStreamException e) {
+			e.printStackTrace();
+			System.exit(0);
+		}
+	}
+	
+	private static <T extends Text> void writeDataset(Dataset<T> dataset, XMLStreamWriter writer) throws XMLStreamException{
+		writeStart(writer, TAG_DATASET, 0);
+		writeElement(writer, new Element(Tag.valueOf(TAG_DATASET_LABEL), "").text(dataset.datasetLabel), 1);
+		if(dataset.hasAcronymsHooks){
+			writeElement(writer, new Element(Tag.valueOf(TAG_ACRONYMS), "").text(TextUtil.merge(dataset.getAcronyms())), 1);
+			writeStart(writer, TAG_LEXICAL_HOOKS, 1);
+			for(LexicalHook hook : dataset.getLexicalHooks()){
+				writeElement(writer, new Element(Tag.valueOf(TAG_LEXICAL_HOOK), "").text(hook.hook), 2);
+			}
+			writeEnd(writer, 1);
+		}
+		writeStart(writer, TAG_MERGED_EXPLICIT, 1);
+		writeElement(writer, dataset.mergedExplicitCitations.toXml(), 2);
+		writeEnd(writer, 1);
+		writeStart(writer, TAG_CITED, 1);
+		writer.writeAttribute(ATTR_AUTHOR, dataset.citedMainAuthor);
+		writeStart(writer, TAG_TITLE, 2);
+		writeElement(writer, dataset.citedTitle.toXml(), 3);
+		writeEnd(writer, 2);
+		writeStart(writer, TAG_CONTENT, 2);
+		writeElement(writer, dataset.citedContent.toXml(), 3);
+		writeEnd(writer, 2);
+		writeEnd(writer, 1);
+		
+		writeStart(writer, TAG_CITERS, 1);
+		printer.resetProgress();
+		for(CitingPaper<T> citer : dataset.citers){
+			printer.progress();
+			writeStart(writer, TAG_CITER, 2);
+			writer.writeAttribute(ATTR_TITLE, citer.title);
+			writeStart(writer, TAG_SENTENCES, 3);
+			for(Sentence<T> sentence : citer.sentences){
+				writeStart(writer, TAG_SENTENCE, 4);
+				writer.writeAttribute(ATTR_SENTENCE_TYPE, sentence.type.toString());
+				writeElement(writer, sentence.text.toXml(), 5);
+				writeEnd(writer, 4);
+			}
+			writeEnd(writer, 3);
+			writeEnd(writer, 2);
+		}
+		writeEnd(writer, 1);
+		writeEnd(writer, 0);
+	}
+	
+	/**
+	 * Writes a Jsoup element and all its content. Elements that contain other elements are
+	 * indented, like Jsoup's own output.
+	 */
+	private static void writeElement(XMLStreamWriter writer, Element element, int depth) throws XMLStreamException{
+		writeStart(writer, element.tagName(), depth);
+		for(Attribute attribute : element.attributes()){
+			writer.writeAttribute(attribute.getKey(), attribute.getValue());
+		}
+		for(Node child : element.childNodes()){
+			if(child instanceof Element){
+				writeElement(writer, (Element) child, depth + 1);
+			}else if(child instanceof TextNode){
+				writer.writeCharacters(((TextNode) child).getWholeText());
+			}
+		}
+		if(element.children().isEmpty()){
+			writer.writeEndElement();
+		}else{
+			writeEnd(writer, depth);
+		}
+	}
+	
+	private static void writeStart(XMLStreamWriter writer, String tagName, int depth) throws XMLStreamException{
+		indent(writer, depth);
+		writer.writeStartElement(tagName);
+	}
+	
+	private static void writeEnd(XMLStreamWriter writer, int depth) throws XMLStreamException{
+		indent(writer, depth);
+		writer.writeEndElement();
+	}
+	
+	private static void indent(XMLStreamWriter writer, int depth) throws XMLStreamException{
+		writer.writeCharacters("\n");
+		for(int i = 0; i < depth; i++){
+			writer.writeCharacters(" ");
+		}
+	}
+	
+	/**
+	 * Builds the Jsoup document for the whole dataset, and writes it as one String. Needs several
+	 * times the size of the file in memory; see writeToXmlStream().
+	 */
+	public static <T extends Text> void writeToXmlWithDom(Dataset<T> dataset, File file){
 		try(FileWriter writer = new FileWriter(file)){
 			printer.print("Constructing XML for " + dataset.datasetLabel + " ... ");
 			Document doc = toXml(dataset);
@@ -113,48 +240,152 @@ public class DatasetXml {
 		return sentenceTag;
 	}
 
-    public static void parseQuick(File file)  {
-		try {
-			XMLInputFactory inputFactory = XMLInputFactory.newInstance();
-	        InputStream in = new BufferedInputStream(new FileInputStream(file));
-	        XMLStreamReader streamReader = inputFactory.createXMLStreamReader(in);
-	        streamReader.nextTag(); // Advance to "book" element
-	        streamReader.nextTag(); // Advance to "person" element
-
-	        int persons = 0;
-	        while (streamReader.hasNext()) {
-	            if (streamReader.isStartElement()) {
-	                switch (streamReader.getLocalName()) {
-	                case "first": {
-	                    System.out.print("First Name : ");
-	                    System.out.println(streamReader.getElementText());
-	                    break;
-	                }
-	                case "last": {
-	                    System.out.print("Last Name : ");
-	                    System.out.println(streamReader.getElementText());
-	                    break;
-	                }
-	                case "age": {
-	                    System.out.print("Age : ");
-	                    System.out.println(streamReader.getElementText());
-	                    break;
-	                }
-	                case "person" : {
-	                    persons ++;
-	                }
-	                }
-	            }
-	            streamReader.next();
-	        }
-	        System.out.print(persons);
-	        System.out.println(" persons");
-		} catch (FileNotFoundException | XMLStreamException e) {
+	/**
+	 * Streams through the file with StAX instead of parsing it into one Jsoup document. Only the
+	 * element of the text being read is built (as a small Jsoup element, which the text class 
+	 * parses just like in datasetFromXml()), so besides the dataset itself, memory is bounded by 
+	 * the largest text. Gives the same dataset as parseXmlFileWithDom().
+	 */
+	public static <T extends Text> Dataset<T> parseQuick(Class<T> textClass, File xmlFile, int maxNumCiters){
+		printer.print("Streaming XML (" + textClass + ") from " + xmlFile.getPath() + " ");
+		XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+		inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		try(Reader in = new JsoupXmlReader(new InputStreamReader(new FileInputStream(xmlFile), StandardCharsets.UTF_8))){
+			XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+			try{
+				Dataset<T> dataset = datasetFromStream(textClass, reader, maxNumCiters);
+				printer.println(" [x]");
+				return dataset;
+			}finally{
+				reader.close();
+			}
+		} catch (IOException | XMLStreamException e) {
 			e.printStackTrace();
+			System.exit(0);
+			return null;
 		}
-    }
+	}
+	
+	private static <T extends Text> Dataset<T> datasetFromStream(Class<T> textClass, XMLStreamReader reader, 
+			int maxNumCiters) throws XMLStreamException{
+		String label = null;
+		String mainAuthor = null;
+		List<String> acronyms = null;
+		List<LexicalHook> lexicalHooks = null;
+		T mergedExplicit = null;
+		T citedTitle = null;
+		T citedContent = null;
+		List<CitingPaper<T>> citers = new ArrayList<CitingPaper<T>>();
+		String citerTitle = null;
+		List<Sentence<T>> sentences = null;
+		SentenceType sentenceType = null;
+		String textParent = null; //the tag that the next text belongs to
+		printer.resetProgress();
+		
+		while(reader.hasNext()){
+			int event = reader.next();
+			if(event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equalsIgnoreCase(TAG_CITER)){
+				citers.add(new CitingPaper<T>(citerTitle, sentences));
+				if(maxNumCiters > 0 && citers.size() == maxNumCiters){
+					break;
+				}
+			}
+			if(event != XMLStreamConstants.START_ELEMENT){
+				continue;
+			}
+			switch(reader.getLocalName().toLowerCase()){
+			case TAG_DATASET_LABEL:
+				label = element(reader).text();
+				break;
+			case TAG_ACRONYMS:
+				acronyms = TextUtil.split(element(reader).text()).collect(Collectors.toCollection(ArrayList::new));
+				break;
+			case TAG_LEXICAL_HOOKS:
+				lexicalHooks = new ArrayList<LexicalHook>();
+				break;
+			case TAG_LEXICAL_HOOK:
+				lexicalHooks.add(new LexicalHook(element(reader).text()));
+				break;
+			case TAG_CITED:
+				mainAuthor = reader.getAttributeValue(null, ATTR_AUTHOR);
+				break;
+			case TAG_CITER:
+				printer.progress();
+				citerTitle = reader.getAttributeValue(null, ATTR_TITLE);
+				sentences = new ArrayList<Sentence<T>>();
+				break;
+			case TAG_SENTENCE:
+				sentenceType = SentenceType.valueOf(reader.getAttributeValue(null, ATTR_SENTENCE_TYPE));
+				textParent = TAG_SENTENCE;
+				break;
+			case TAG_MERGED_EXPLICIT:
+			case TAG_TITLE:
+			case TAG_CONTENT:
+				textParent = reader.getLocalName().toLowerCase();
+				break;
+			case TAG_TEXT:
+				T text = text(textClass, element(reader));
+				switch(textParent){
+				case TAG_MERGED_EXPLICIT:
+					mergedExplicit = text;
+					break;
+				case TAG_TITLE:
+					citedTitle = text;
+					break;
+				case TAG_CONTENT:
+					citedContent = text;
+					break;
+				case TAG_SENTENCE:
+					sentences.add(new Sentence<T>(sentenceType, text, sentences.size()));
+					break;
+				default:
+					throw new IllegalStateException("Text in " + textParent);
+				}
+				break;
+			}
+		}
+		
+		Dataset<T> dataset = Dataset.full(label, mainAuthor, citedTitle, citers, citedContent, mergedExplicit);
+		if(acronyms != null && lexicalHooks != null){
+			dataset.addAcronymsHooks(acronyms, lexicalHooks);
+		}
+		return dataset;
+	}
+	
+	/**
+	 * Reads the element that the reader is at the start of, with all its content, into a Jsoup 
+	 * element. The reader is left at its end.
+	 */
+	private static Element element(XMLStreamReader reader) throws XMLStreamException{
+		Element element = new Element(Tag.valueOf(reader.getLocalName()), "");
+		for(int i = 0; i < reader.getAttributeCount(); i++){
+			element.attr(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+		}
+		while(true){
+			switch(reader.next()){
+			case XMLStreamConstants.START_ELEMENT:
+				element.appendChild(element(reader));
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				element.appendChild(new TextNode(reader.getText(), ""));
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				return element;
+			}
+		}
+	}
 	
 	public static <T extends Text> Dataset<T> parseXmlFile(Class<T> textClass, File xmlFile, int maxNumCiters){
+		return parseQuick(textClass, xmlFile, maxNumCiters);
+	}
+	
+	/**
+	 * Parses the whole file into a Jsoup document first. Slower than parseQuick(), and needs 
+	 * memory for the whole document.
+	 */
+	public static <T extends Text> Dataset<T> parseXmlFileWithDom(Class<T> textClass, File xmlFile, int maxNumCiters){
 		try {
 			printer.print("Parsing XML (" + textClass + ") from " + xmlFile.getPath() + " ... ");
 			Document doc = Jsoup.parse(new BufferedInputStream(new FileInputStream(xmlFile)), null, "", Parser.xmlParser());
@@ -234,6 +465,8 @@ public class DatasetXml {
 			return (T) Text.fromXml(textTag);
 		}else if(textClass.equals(TextWithNgrams.class)){
 			return (T) TextWithNgrams.fromXml(textTag);
+		}else if(textClass.equals(TextWithHashedNgrams.class)){
+			return (T) TextWithHashedNgrams.fromXml(textTag);
 		}else if(textClass.equals(TextWithSkipgrams.class)){
 			return (T) TextWithSkipgrams.fromXml(textTag);
 		}else if(textClass.equals(TextWithWiki.class)){
@@ -0,0 +1,127 @@
+package dataset;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jsoup.nodes.Entities;
+
+/**
+ * Makes the XML that Jsoup writes (see DatasetXml.writeToXmlWithDom()) well-formed, for an XML parser:
+ * HTML entities (e.g. &nbsp;) become numeric character references, since XML only knows five
+ * entities, and '<' in attribute values (which Jsoup doesn't escape) becomes &lt;. 
+ * Everything else is passed on as it is.
+ * @author jonathan
+ *
+ */
+class JsoupXmlReader extends Reader {
+	
+	private static final int MAX_NAME_LENGTH = 32;
+	private static final Set<String> XML_ENTITIES = new HashSet<String>(Arrays.asList("amp", "lt", "gt", "quot", "apos"));
+	
+	private final Reader in;
+	private final char[] buffer = new char[8192];
+	private int position;
+	private int limit;
+	private String replacement; //being passed on, from replacementPosition
+	private int replacementPosition;
+	private boolean inTag;
+	private boolean inAttributeValue; //Jsoup always quotes them with "
+	
+	JsoupXmlReader(Reader in){
+		this.in = in;
+	}
+	
+	@Override
+	public int read(char[] chars, int offset, int length) throws IOException{
+		if(length == 0){
+			return 0;
+		}
+		if(replacement != null){
+			int n = Math.min(length, replacement.length() - replacementPosition);
+			replacement.getChars(replacementPosition, replacementPosition + n, chars, offset);
+			replacementPosition += n;
+			if(replacementPosition == replacement.length()){
+				replacement = null;
+			}
+			return n;
+		}
+		if(!fill(1)){
+			return -1;
+		}
+		if(buffer[position] == '&' && replaceEntity()){
+			return read(chars, offset, length);
+		}
+		if(buffer[position] == '<' && inAttributeValue){
+			replace(1, "&lt;");
+			return read(chars, offset, length);
+		}
+		int n = 0;
+		do{
+			char c = buffer[position++];
+			chars[offset + n++] = c;
+			if(inAttributeValue){
+				inAttributeValue = c != '"';
+			}else if(inTag){
+				inAttributeValue = c == '"';
+				inTag = c != '>';
+			}else{
+				inTag = c == '<';
+			}
+		}while(n < length && position < limit && buffer[position] != '&' && !(inAttributeValue && buffer[position] == '<'));
+		return n;
+	}
+	
+	/**
+	 * @return whether the '&' at the current position starts an HTML entity, which is then replaced
+	 */
+	private boolean replaceEntity() throws IOException{
+		fill(MAX_NAME_LENGTH + 2);
+		int end = Math.min(limit, position + MAX_NAME_LENGTH + 2);
+		for(int i = position + 1; i < end; i++){
+			if(buffer[i] == ';'){
+				String name = new String(buffer, position + 1, i - position - 1);
+				if(!XML_ENTITIES.contains(name) && Entities.isNamedEntity(name)){
+					replace(i + 1 - position, "&#" + (int) Entities.getCharacterByName(name) + ";");
+					return true;
+				}
+				return false;
+			}
+		}
+		return false;
+	}
+	
+	private void replace(int numChars, String replacement){
+		this.replacement = replacement;
+		replacementPosition = 0;
+		position += numChars;
+	}
+	
+	/**
+	 * Reads until at least 'wanted' chars are buffered, or the input ends.
+	 * @return whether any chars are buffered
+	 */
+	private boolean fill(int wanted) throws IOException{
+		if(limit - position >= wanted){
+			return true;
+		}
+		System.arraycopy(buffer, position, buffer, 0, limit - position);
+		limit -= position;
+		position = 0;
+		while(limit < wanted){
+			int n = in.read(buffer, limit, buffer.length - limit);
+			if(n == -1){
+				break;
+			}
+			limit += n;
+		}
+		return limit > position;
+	}
+	
+	@Override
+	public void close() throws IOException{
+		in.close();
+	}
+}
@@ -0,0 +1,136 @@
+package dataset;
+
+import gnu.trove.iterator.TLongDoubleIterator;
+import gnu.trove.map.hash.TLongIntHashMap;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * N-gram document frequencies in a binary file, which is mapped into memory and searched
+ * where it is instead of being parsed. The n-grams are stored by NgramVocabulary.hash(),
+ * since keys differ between runs. The file is (big-endian):
+ * MAGIC, numDocuments, maxN, the number of n-grams for n = 1 ... maxN, and then for each n
+ * the sorted hashes (longs) followed by their counts (ints).
+ * @author jonathan
+ *
+ */
+class MappedNgramCounts {
+	
+	private static final int MAGIC = 0x49444631; //"IDF1"
+	private static final int HASH_BYTES = 8;
+	private static final int COUNT_BYTES = 4;
+	
+	final int numDocuments;
+	private final MappedByteBuffer buffer;
+	private final int[] sizes; //by n-1
+	private final int[] hashesStart; //byte positions, by n-1
+	private final int[] countsStart;
+	
+	private MappedNgramCounts(MappedByteBuffer buffer){
+		this.buffer = buffer;
+		if(buffer.getInt(0) != MAGIC){
+			throw new IllegalArgumentException("Not a binary idf file");
+		}
+		numDocuments = buffer.getInt(4);
+		int maxN = buffer.getInt(8);
+		sizes = new int[maxN];
+		hashesStart = new int[maxN];
+		countsStart = new int[maxN];
+		int position = 12 + 4 * maxN;
+		for(int i = 0; i < maxN; i++){
+			sizes[i] = buffer.getInt(12 + 4 * i);
+			hashesStart[i] = position;
+			countsStart[i] = position + HASH_BYTES * sizes[i];
+			position = countsStart[i] + COUNT_BYTES * sizes[i];
+		}
+	}
+	
+	static MappedNgramCounts map(File file) throws IOException{
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+			return new MappedNgramCounts(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+	
+	/**
+	 * Writes the n-grams that have a count of at least minCount.
+	 */
+	static void write(File file, Ngrams ngrams, int numDocuments, int maxN, int minCount) throws IOException{
+		NgramVocabulary vocabulary = NgramVocabulary.instance();
+		long[][] hashes = new long[maxN][];
+		int[][] counts = new int[maxN][];
+		for(int n = 1; n <= maxN; n++){
+			TLongIntHashMap countsByHash = new TLongIntHashMap();
+			TLongDoubleIterator it = ngrams.map(n).iterator();
+			while(it.hasNext()){
+				it.advance();
+				if(it.value() >= minCount){
+					long hash = vocabulary.hash(it.key());
+					if(countsByHash.containsKey(hash)){
+						throw new IllegalStateException("Hash collision: " + vocabulary.ngram(it.key()));
+					}
+					countsByHash.put(hash, (int) it.value());
+				}
+			}
+			hashes[n-1] = countsByHash.keys();
+			Arrays.sort(hashes[n-1]);
+			counts[n-1] = new int[hashes[n-1].length];
+			for(int i = 0; i < hashes[n-1].length; i++){
+				counts[n-1][i] = countsByHash.get(hashes[n-1][i]);
+			}
+		}
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))){
+			out.writeInt(MAGIC);
+			out.writeInt(numDocuments);
+			out.writeInt(maxN);
+			for(int i = 0; i < maxN; i++){
+				out.writeInt(hashes[i].length);
+			}
+			for(int i = 0; i < maxN; i++){
+				for(long hash : hashes[i]){
+					out.writeLong(hash);
+				}
+				for(int count : counts[i]){
+					out.writeInt(count);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @param key see NgramVocabulary
+	 * @return 0 if the n-gram isn't in the file
+	 */
+	double get(int n, long key){
+		if(n > sizes.length){
+			return 0;
+		}
+		long hash = NgramVocabulary.instance().hash(key);
+		int low = 0;
+		int high = sizes[n-1] - 1;
+		while(low <= high){
+			int middle = (low + high) >>> 1;
+			long middleHash = buffer.getLong(hashesStart[n-1] + HASH_BYTES * middle);
+			if(middleHash < hash){
+				low = middle + 1;
+			}else if(middleHash > hash){
+				high = middle - 1;
+			}else{
+				return buffer.getInt(countsStart[n-1] + COUNT_BYTES * middle);
+			}
+		}
+		return 0;
+	}
+	
+	int size(int n){
+		return n > sizes.length ? 0 : sizes[n-1];
+	}
+}
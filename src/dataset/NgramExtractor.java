@@ -1,6 +1,7 @@
 package dataset;
 
-import gnu.trove.iterator.TObjectDoubleIterator;
+import gnu.trove.iterator.TLongDoubleIterator;
+import gnu.trove.map.hash.TLongDoubleHashMap;
 import gnu.trove.map.hash.TObjectDoubleHashMap;
 
 import java.util.ArrayList;
@@ -8,10 +9,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
-import util.Printer;
 
 /**
  * Handles extracting n-grams and skip-grams, as well as tf-idf scores of 
@@ -22,13 +20,15 @@ import util.Printer;
 public class NgramExtractor {
 
 	private static final Pattern NUM_OR_CHAR = Pattern.compile("\\d+|.");
+	private static final int EXCLUDED = 0; //not an id in NgramVocabulary
+	private static final int EMPTY_WORD = NgramVocabulary.instance().id("");
 	
 	//Tries to optimize the process by not creating the same n-grams twice for Ngram and Skipgram
 	public static Ngrams[] nAndSkipgramsTfIdf(int maxN, List<String> words, NgramIdf ngramIdf, NgramIdf skipgramIdf){
-		List<TObjectDoubleHashMap<String>> ngrams = allNgrams(maxN, words);
+		List<TLongDoubleHashMap> ngrams = allNgramKeys(maxN, words);
 		final int minSkip = 1;
 		final int maxSkip = 2;
-		List<TObjectDoubleHashMap<String>> skipgrams = allSkipgrams(maxN, minSkip, maxSkip, words);
+		List<TLongDoubleHashMap> skipgrams = allSkipgramKeys(maxN, minSkip, maxSkip, words);
 		for(int n = 2; n <= maxN; n++){ //Don't add unigrams!
 			addTo(ngrams.get(n-1), skipgrams.get(n-1));
 		}
@@ -40,7 +40,7 @@ public class NgramExtractor {
 	}
 	
 	public static Ngrams ngramsTfIdf(int maxN , List<String> words, NgramIdf ngramIdf){
-		List<TObjectDoubleHashMap<String>> ngrams = allNgrams(maxN, words);
+		List<TLongDoubleHashMap> ngrams = allNgramKeys(maxN, words);
 		for(int n = 1; n <= ngrams.size(); n++){
 			countsToTfIdf(n, ngrams.get(n-1), ngramIdf);
 		}
@@ -49,8 +49,8 @@ public class NgramExtractor {
 	
 	//Optimized to not extract skip0-ngrams twice
 	public static Ngrams[] nAndSkipgrams(int maxN, int maxSkip, List<String> words){
-		List<TObjectDoubleHashMap<String>> ngrams = allNgrams(maxN, words);
-		List<TObjectDoubleHashMap<String>> skipgrams = allSkipgrams(maxN, 1, maxSkip, words);
+		List<TLongDoubleHashMap> ngrams = allNgramKeys(maxN, words);
+		List<TLongDoubleHashMap> skipgrams = allSkipgramKeys(maxN, 1, maxSkip, words);
 		for(int i = 0; i < ngrams.size(); i++){
 			addTo(ngrams.get(i), skipgrams.get(i));
 		}
@@ -69,92 +69,151 @@ public class NgramExtractor {
 		return phrases;
 	}
 	
+	/**
+	 * The n-gram counts with the n-grams written out as text, see allNgramKeys().
+	 */
 	public static List<TObjectDoubleHashMap<String>> allNgrams(int maxN, List<String> words){
-		return IntStream.range(1, maxN + 1)
-					.mapToObj(n -> ngrams(n, words))
+		return allNgramKeys(maxN, words).stream()
+					.map(NgramExtractor::toText)
 					.collect(Collectors.toCollection(ArrayList::new));
 	}
 	
-	public static List<TObjectDoubleHashMap<String>> allSkipgrams(int maxN, int minSkip, int maxSkip, List<String> words){
-		return IntStream.range(1, maxN + 1)
-				.mapToObj(n -> skipgrams(n, minSkip, maxSkip, words))
-				.collect(Collectors.toCollection(ArrayList::new));
+	/**
+	 * @return the counts of the n-grams for n = 1 ... maxN, by their keys in NgramVocabulary
+	 */
+	public static List<TLongDoubleHashMap> allNgramKeys(int maxN, List<String> words){
+		return allNgramKeys(maxN, tokens(words));
 	}
 	
-	public static TObjectDoubleHashMap<String> ngrams(int n, List<String> words){
-		TObjectDoubleHashMap<String> ngramCounts = new TObjectDoubleHashMap<String>();
-		final boolean SKIP_STOPWORDS = true;
-		for(int word0 = 0; word0 <= words.size() - n; word0++){
-			maybeAddNgram(ngramCounts, words.subList(word0, word0 + n), SKIP_STOPWORDS);
-		}
-		return ngramCounts;
+	public static List<TLongDoubleHashMap> allSkipgramKeys(int maxN, int minSkip, int maxSkip, List<String> words){
+		return allSkipgramKeys(maxN, minSkip, maxSkip, tokens(words));
 	}
 	
-	private static TObjectDoubleHashMap<String> skipgrams(int n, int minSkip, int maxSkip, List<String> words){
-		TObjectDoubleHashMap<String> counts = new TObjectDoubleHashMap<String>();
-		if(n == 1){
-			return counts; //actually, no skipgrams are added when n == 1, so this just saves computation time
+	/**
+	 * The words as ids in NgramVocabulary, or EXCLUDED for words that can't be part of an n-gram 
+	 * (stopwords, numbers and single characters). That way each word is only checked once,
+	 * instead of once for every n-gram it is part of.
+	 */
+	public static int[] tokens(List<String> words){
+		NgramVocabulary vocabulary = NgramVocabulary.instance();
+		TextUtil textUtil = TextUtil.instance();
+		int[] tokens = new int[words.size()];
+		for(int i = 0; i < tokens.length; i++){
+			String word = words.get(i);
+			if(textUtil.isStopword(word) || NUM_OR_CHAR.matcher(word).matches()){ //TODO number-tag
+				tokens[i] = EXCLUDED;
+			}else{
+				tokens[i] = vocabulary.id(word);
+			}
 		}
-		for(int skip = minSkip; skip <= maxSkip; skip++){
-			addSkipgrams(counts, n, skip, words);
+		return tokens;
+	}
+	
+	/**
+	 * One pass over the tokens, keeping the key of the last maxN words. Every n-gram that
+	 * ends at a token is the last n words of it, as long as none of them was excluded.
+	 */
+	public static List<TLongDoubleHashMap> allNgramKeys(int maxN, int[] tokens){
+		checkMaxN(maxN);
+		List<TLongDoubleHashMap> counts = emptyCounts(maxN);
+		long window = 0;
+		int windowSize = 0; //tokens in a row since the last excluded one, at most maxN
+		for(int token : tokens){
+			if(token == EXCLUDED){
+				window = 0;
+				windowSize = 0;
+				continue;
+			}
+			windowSize = Math.min(windowSize + 1, maxN);
+			window = NgramVocabulary.lastWords(NgramVocabulary.append(window, token), windowSize);
+			for(int n = 1; n <= windowSize; n++){
+				if(n == 1 && token == EMPTY_WORD){
+					continue; //An n-gram with n > 1 is never empty, since it contains spaces
+				}
+				counts.get(n-1).adjustOrPutValue(NgramVocabulary.lastWords(window, n), 1, 1);
+			}
 		}
 		return counts;
 	}
 	
-	private static void addSkipgrams(TObjectDoubleHashMap<String> counts, int n, int numSkip, List<String> words){
-		final boolean SKIP_STOPWORDS = true;
-		Printer p = new Printer(false);
-		for(int word0 = 0; word0 <= words.size() - n - numSkip; word0++){
-			p.println("w0: " + word0);
-			for(int skip0 = word0 + 1; skip0 < word0 + n; skip0++){
-				p.println(" s0: " + skip0);
-				List<String> ngramWords = new ArrayList<String>(n);
-				for(int word = word0; word < word0 + n + numSkip; word++){
-					p.println("   w: " + word);
-					boolean shouldSkip = word >= skip0 && word < skip0 + numSkip;
-					if(!shouldSkip){
-						ngramWords.add(words.get(word));
+	/**
+	 * Skip-grams of n words, where numSkip words have been skipped after the first, second ... 
+	 * (n-1)th word. With numSkip 0, every n-gram is counted n-1 times.
+	 */
+	public static List<TLongDoubleHashMap> allSkipgramKeys(int maxN, int minSkip, int maxSkip, int[] tokens){
+		checkMaxN(maxN);
+		List<TLongDoubleHashMap> counts = emptyCounts(maxN);
+		for(int n = 2; n <= maxN; n++){ //No skipgrams are added when n == 1
+			for(int numSkip = minSkip; numSkip <= maxSkip; numSkip++){
+				TLongDoubleHashMap nCounts = counts.get(n-1);
+				for(int word0 = 0; word0 <= tokens.length - n - numSkip; word0++){
+					for(int wordsBeforeSkip = 1; wordsBeforeSkip < n; wordsBeforeSkip++){
+						long key = skipgramKey(tokens, word0, n, wordsBeforeSkip, numSkip);
+						if(key != EXCLUDED){
+							nCounts.adjustOrPutValue(key, 1, 1);
+						}
 					}
 				}
-				maybeAddNgram(counts, ngramWords, SKIP_STOPWORDS);
 			}
 		}
+		return counts;
 	}
 	
-	private static void maybeAddNgram(TObjectDoubleHashMap<String> ngramCounts, List<String> ngramWords, boolean skipStopwords){
-		if(skipStopwords){
-			if(ngramWords.stream().anyMatch(w -> TextUtil.instance().isStopword(w))){ //TODO number-tag
-				return;
+	/**
+	 * @return EXCLUDED if any of the words is excluded
+	 */
+	private static long skipgramKey(int[] tokens, int word0, int n, int wordsBeforeSkip, int numSkip){
+		long key = 0;
+		for(int i = 0; i < n; i++){
+			int token = i < wordsBeforeSkip ? tokens[word0 + i] : tokens[word0 + numSkip + i];
+			if(token == EXCLUDED){
+				return EXCLUDED;
 			}
+			key = NgramVocabulary.append(key, token);
 		}
-		if(NUM_OR_CHAR != null){
-			if(ngramWords.stream().anyMatch(w -> NUM_OR_CHAR.matcher(w).matches())){
-				return;
-			}
+		return key;
+	}
+	
+	private static void checkMaxN(int maxN){
+		if(maxN > NgramVocabulary.MAX_N){
+			throw new IllegalArgumentException("Can't represent " + maxN + "-grams, max is " + NgramVocabulary.MAX_N);
+		}
+	}
+	
+	private static List<TLongDoubleHashMap> emptyCounts(int maxN){
+		List<TLongDoubleHashMap> counts = new ArrayList<TLongDoubleHashMap>(maxN);
+		for(int n = 1; n <= maxN; n++){
+			counts.add(new TLongDoubleHashMap());
 		}
-		Stream<String> ngramWordsStream = ngramWords.stream();
-		String ngram = ngramWordsStream.reduce((s1,s2) -> s1 + " " + s2).get();
-		if(ngram.length() > 0){
-			ngramCounts.adjustOrPutValue(ngram, 1, 1);
+		return counts;
+	}
+	
+	private static TObjectDoubleHashMap<String> toText(TLongDoubleHashMap counts){
+		NgramVocabulary vocabulary = NgramVocabulary.instance();
+		TObjectDoubleHashMap<String> textCounts = new TObjectDoubleHashMap<String>(counts.size());
+		TLongDoubleIterator it = counts.iterator();
+		while(it.hasNext()){
+			it.advance();
+			textCounts.put(vocabulary.ngram(it.key()), it.value());
 		}
+		return textCounts;
 	}
 	
-	public static void countsToTfIdf(int n, TObjectDoubleHashMap<String> counts, NgramIdf ngramIdf){
-		for(Object k : counts.keys()){
-			String ngram = (String) k;
-			double tf = 1 + Math.log(counts.get(ngram));
-			double idfCount = ngramIdf.idf.getNgram(n, ngram);
+	public static void countsToTfIdf(int n, TLongDoubleHashMap counts, NgramIdf ngramIdf){
+		for(long key : counts.keys()){
+			double tf = 1 + Math.log(counts.get(key));
+			double idfCount = ngramIdf.documentFrequency(n, key);
 			if(idfCount > 0){
 				double idf = Math.log(1 + ngramIdf.numDocuments/idfCount);
-				counts.put(ngram, tf*idf);
+				counts.put(key, tf*idf);
 			}else{
-				counts.remove(ngram);
+				counts.remove(key);
 			}
 		}
 	}
 	
-	private static <K> void addTo(TObjectDoubleHashMap<K> added, TObjectDoubleHashMap<K> receiver){
-		TObjectDoubleIterator<K> it = added.iterator();
+	private static void addTo(TLongDoubleHashMap added, TLongDoubleHashMap receiver){
+		TLongDoubleIterator it = added.iterator();
 		while(it.hasNext()){
 			it.advance();
 			receiver.adjustOrPutValue(it.key(), it.value(), it.value());
@@ -162,7 +221,7 @@ public class NgramExtractor {
 	}
 	
 	public static void main(String[] args) {
-		TObjectDoubleHashMap<String> counts = skipgrams(1, 0, 2, Arrays.asList(new String[]{"Peter", "lies" ,"above", "his", "bed", "sleeping"}));
-		System.out.println(counts);
+		List<TLongDoubleHashMap> counts = allSkipgramKeys(3, 1, 2, Arrays.asList(new String[]{"Peter", "lies" ,"above", "his", "bed", "sleeping"}));
+		System.out.println(counts.stream().map(NgramExtractor::toText).collect(Collectors.toList()));
 	}
 }
@@ -1,8 +1,13 @@
 package dataset;
 
+import gnu.trove.map.hash.TLongDoubleHashMap;
+
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.function.LongPredicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
@@ -13,6 +18,8 @@ import util.Printer;
 /**
  * Represents idf (inverse document frequency) values for n-grams or skip-grams.
  * These are needed to compute tf-idf scores for n-grams or skip-grams.
+ * They are either counted in memory (idf), or read from a binary file (see writeBinary()),
+ * in which case they can't be changed.
  * @author jonathan
  *
  */
@@ -21,12 +28,17 @@ public class NgramIdf {
 	public final static int DEFAULT_NGRAM_MIN_COUNT = 5;
 	public final static int DEFAULT_SKIPGRAM_MIN_COUNT = 10;
 	
+	public final static int DEFAULT_SKETCH_DEPTH = 4;
+	public final static int DEFAULT_SKETCH_LOG2_WIDTH = 22;
+	
 	private final static String TAG_NGRAMS = "ngrams";
 	private final static int MAX_N = 3;
 	private final static Printer printer = new Printer(true);
 	
-	public Ngrams idf;
+	public Ngrams idf; //null if read from a binary file
 	public int numDocuments;
+	private MappedNgramCounts mapped;
+	private int mappedMinCount;
 	
 	public NgramIdf(){
 		idf = Ngrams.empty(MAX_N);
@@ -42,8 +54,8 @@ public class NgramIdf {
 			printer.print("Creating idf from " + xmlFile.getPath() + " ... ");
 			Document doc = Jsoup.parse(xmlFile, null);
 			NgramIdf ngramIdf = fromXml(doc, minCount);
-			printer.println("[x] (" + ngramIdf.idf.size(1) + " unigrams, " 
-					+ ngramIdf.idf.size(2) + " bigrams, " + ngramIdf.idf.size(3) + " trigrams)");
+			printer.println("[x] (" + ngramIdf.size(1) + " unigrams, " 
+					+ ngramIdf.size(2) + " bigrams, " + ngramIdf.size(3) + " trigrams)");
 			return ngramIdf;
 		} catch (IOException e) {
 			e.printStackTrace();
@@ -52,6 +64,62 @@ public class NgramIdf {
 		}
 	}
 	
+	/**
+	 * Reads the binary file next to the xml file (see binaryFile()) if there is one,
+	 * since it's mapped rather than parsed.
+	 */
+	public static NgramIdf fromFile(File xmlFile, int minCount){
+		File binaryFile = binaryFile(xmlFile);
+		if(binaryFile.exists()){
+			return fromBinaryFile(binaryFile, minCount);
+		}
+		return fromXmlFile(xmlFile, minCount);
+	}
+	
+	public static NgramIdf fromBinaryFile(File binaryFile, int minCount){
+		try {
+			printer.print("Mapping idf from " + binaryFile.getPath() + " ... ");
+			NgramIdf ngramIdf = new NgramIdf(null, 0);
+			ngramIdf.mapped = MappedNgramCounts.map(binaryFile);
+			ngramIdf.mappedMinCount = minCount;
+			ngramIdf.numDocuments = ngramIdf.mapped.numDocuments;
+			printer.println("[x] (" + ngramIdf.size(1) + " unigrams, " 
+					+ ngramIdf.size(2) + " bigrams, " + ngramIdf.size(3) + " trigrams)");
+			return ngramIdf;
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(0);
+			return null;
+		}
+	}
+	
+	/**
+	 * ngram-frequencies.xml -> ngram-frequencies.bin
+	 */
+	public static File binaryFile(File xmlFile){
+		String name = xmlFile.getName().replaceFirst("\\.xml$", "");
+		return new File(xmlFile.getParentFile(), name + ".bin");
+	}
+	
+	/**
+	 * @param key see NgramVocabulary
+	 * @return the number of documents that contain the n-gram
+	 */
+	public double documentFrequency(int n, long key){
+		if(mapped != null){
+			double count = mapped.get(n, key);
+			return count >= mappedMinCount ? count : 0;
+		}
+		return idf.getNgram(n, key);
+	}
+	
+	/**
+	 * @return the number of n-grams. For a binary file, also those below minCount.
+	 */
+	public int size(int n){
+		return mapped != null ? mapped.size(n) : idf.size(n);
+	}
+	
 	public static NgramIdf fromXml(Document doc, int minCount){
 		int numDocuments = Integer.parseInt(doc.select("numDocuments").text());
 		Ngrams ngrams = Ngrams.fromXml(doc.select(TAG_NGRAMS).first(), minCount);
@@ -73,20 +141,106 @@ public class NgramIdf {
 		return this;
 	}
 	
+	/**
+	 * The documents of a dataset: the cited content, and each sentence of the citers.
+	 */
+	public static <T extends Text> Stream<List<String>> documents(Dataset<T> dataset){
+		Stream<List<String>> sentences = dataset.citers.stream()
+				.flatMap(c -> c.sentences.stream())
+				.map(s -> s.text.lemmas);
+		return Stream.concat(Stream.of(dataset.citedContent.lemmas), sentences);
+	}
+	
+	/**
+	 * Counts the documents in parallel. Each worker counts its part of the documents into
+	 * its own NgramIdf, and these are merged pairwise (see Stream.collect()). The counts, and
+	 * so the xml, are the same as when parseOneDocument() is called for every document in turn.
+	 * Rare n-grams should be removed afterwards (see prune()), since an n-gram may be rare in
+	 * every part of the documents but not in all of them.
+	 */
+	public static NgramIdf fromDocuments(Stream<List<String>> documents, Type type){
+		return documents.parallel().collect(
+				NgramIdf::new, 
+				(ngramIdf, words) -> ngramIdf.parseOneDocument(words, type), 
+				NgramIdf::merge);
+	}
+	
+	/**
+	 * The same as fromDocuments(documents.get(), type).prune(minCount), without holding counts of
+	 * all n-grams at once. The first pass estimates how many documents contain each n-gram
+	 * with a Count-Min sketch, which never underestimates. The second pass counts exactly, but only
+	 * the n-grams whose estimate is at least minCount, which includes every n-gram that is kept.
+	 * A smaller sketch lets more rare n-grams through to the second pass, but doesn't change the result.
+	 */
+	public static NgramIdf fromDocumentsTwoPass(Supplier<Stream<List<String>>> documents, Type type, int minCount){
+		return fromDocumentsTwoPass(documents, type, minCount, DEFAULT_SKETCH_DEPTH, DEFAULT_SKETCH_LOG2_WIDTH);
+	}
+	
+	/**
+	 * @param sketchDepth
+	 * @param sketchLog2Width the sketch has sketchDepth * 2^sketchLog2Width int counters
+	 */
+	public static NgramIdf fromDocumentsTwoPass(Supplier<Stream<List<String>>> documents, Type type, int minCount, 
+			int sketchDepth, int sketchLog2Width){
+		CountMinSketch sketch = new CountMinSketch(sketchDepth, sketchLog2Width);
+		documents.get().parallel().forEach(words -> {
+			for(TLongDoubleHashMap counts : documentNgrams(words, type)){
+				counts.forEachKey(key -> {
+					sketch.add(key);
+					return true;
+				});
+			}
+		});
+		return documents.get().parallel().collect(
+				NgramIdf::new, 
+				(ngramIdf, words) -> ngramIdf.parseOneDocument(words, type, key -> sketch.estimate(key) >= minCount), 
+				NgramIdf::merge)
+				.prune(minCount);
+	}
+	
+	public NgramIdf merge(NgramIdf other){
+		counts().add(other.counts(), false);
+		numDocuments += other.numDocuments;
+		return this;
+	}
+	
+	/**
+	 * Removes the n-grams that occur in fewer than minCount documents.
+	 */
+	public NgramIdf prune(int minCount){
+		counts().removeBelow(minCount);
+		return this;
+	}
+	
 	public NgramIdf parseOneDocument(List<String> words, Type type){
+		counts().add(new Ngrams(documentNgrams(words, type)), true);
+		numDocuments ++;
+		return this;
+	}
+	
+	/**
+	 * Only counts the n-grams whose keys are accepted by 'counted'.
+	 */
+	private NgramIdf parseOneDocument(List<String> words, Type type, LongPredicate counted){
+		List<TLongDoubleHashMap> ngrams = documentNgrams(words, type);
+		for(TLongDoubleHashMap counts : ngrams){
+			counts.retainEntries((key, count) -> counted.test(key));
+		}
+		counts().add(new Ngrams(ngrams), true);
+		numDocuments ++;
+		return this;
+	}
+	
+	private static List<TLongDoubleHashMap> documentNgrams(List<String> words, Type type){
 		int maxSkip = 2;
 		switch(type){
 		case NGRAM:
-			Ngrams ngrams = new Ngrams(NgramExtractor.allNgrams(MAX_N, words));
-			idf.add(ngrams, true);
-			break;
+			return NgramExtractor.allNgramKeys(MAX_N, words);
 		case SKIPGRAM:
-			Ngrams skipgramsObj = new Ngrams(NgramExtractor.allSkipgrams(MAX_N, 0, maxSkip, words));
-			idf.add(skipgramsObj, true);
-			break;
+			return NgramExtractor.allSkipgramKeys(MAX_N, 0, maxSkip, words);
+		default:
+			throw new IllegalArgumentException(type.toString());
 		}
-		numDocuments ++;
-		return this;
 	}
 	
 	public void writeXml(File xmlFile, int minCount){
@@ -101,10 +255,32 @@ public class NgramIdf {
 	public Document toXml(int minCount){
 		Document doc = new Document("");
 		doc.appendElement("numDocuments").text("" + numDocuments);
-		doc.appendChild(idf.toXml(TAG_NGRAMS, minCount));
+		doc.appendChild(counts().toXml(TAG_NGRAMS, minCount));
 		return doc;
 	}
 	
+	/**
+	 * Writes the same counts as writeXml(), but in a binary format that can be mapped into
+	 * memory instead of being parsed (see fromBinaryFile()).
+	 */
+	public void writeBinary(File binaryFile, int minCount){
+		printer.print("Writing frequencies to " + binaryFile.getPath() + " ... ");
+		try {
+			MappedNgramCounts.write(binaryFile, counts(), numDocuments, MAX_N, minCount);
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(0);
+		}
+		printer.println("[x]");
+	}
+	
+	private Ngrams counts(){
+		if(idf == null){
+			throw new UnsupportedOperationException("The idf was read from a binary file and can't be changed");
+		}
+		return idf;
+	}
+	
 	public static enum Type{
 		NGRAM,
 		SKIPGRAM;
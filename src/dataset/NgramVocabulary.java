@@ -0,0 +1,159 @@
+package dataset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives every word (lemma) an int id, so that an n-gram can be represented by a long key
+ * instead of a String of space separated words: the ids of its words, BITS_PER_WORD bits each.
+ * Ids start at 1, so that the words of a key can be found again (see ngram()).
+ * There is only one vocabulary, since n-grams of all texts and idf-values are compared to each other.
+ * Keys depend on the order in which words were added, so only hash() should be stored in files.
+ * Thread-safe, and only adding words takes a lock.
+ * @author jonathan
+ *
+ */
+public class NgramVocabulary {
+	
+	public static final int BITS_PER_WORD = 21;
+	public static final int MAX_N = Long.SIZE / BITS_PER_WORD;
+	private static final int MAX_ID = (1 << BITS_PER_WORD) - 1;
+	private static final long WORD_MASK = MAX_ID;
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	
+	private static final NgramVocabulary instance = new NgramVocabulary();
+	
+	private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+	//words[id - 1] and wordHashes[id - 1]. Only replaced and written while holding the lock. A word is
+	//written before its id is put in 'ids', so whoever knows an id sees the word.
+	private volatile String[] words = new String[1024];
+	private volatile long[] wordHashes = new long[1024];
+	private volatile int size;
+	
+	public static NgramVocabulary instance(){
+		return instance;
+	}
+	
+	private NgramVocabulary(){}
+	
+	/**
+	 * @return the id of the word, which is added to the vocabulary if it's new
+	 */
+	public int id(String word){
+		Integer id = ids.get(word);
+		if(id != null){
+			return id;
+		}
+		return add(word);
+	}
+	
+	private synchronized int add(String word){
+		Integer id = ids.get(word);
+		if(id != null){
+			return id;
+		}
+		if(size == MAX_ID){
+			throw new IllegalStateException("More than " + MAX_ID + " words in the vocabulary");
+		}
+		if(size == words.length){
+			words = Arrays.copyOf(words, Math.min(2 * size, MAX_ID));
+			wordHashes = Arrays.copyOf(wordHashes, words.length);
+		}
+		words[size] = word;
+		wordHashes[size] = hash(word);
+		size ++;
+		ids.put(word, size);
+		return size;
+	}
+	
+	public String word(int id){
+		return words[id - 1];
+	}
+	
+	public int size(){
+		return size;
+	}
+	
+	/**
+	 * @return the key of the n-gram that consists of the n-gram of 'key' followed by the word 'id'
+	 */
+	public static long append(long key, int id){
+		return (key << BITS_PER_WORD) | id;
+	}
+	
+	/**
+	 * @return the key of the n-gram that consists of the last n words of the n-gram of 'key'
+	 */
+	public static long lastWords(long key, int n){
+		return key & ((1L << (n * BITS_PER_WORD)) - 1);
+	}
+	
+	public long key(List<String> ngramWords){
+		if(ngramWords.size() > MAX_N){
+			throw new IllegalArgumentException("Can't represent " + ngramWords.size() + "-grams, max is " + MAX_N);
+		}
+		long key = 0;
+		for(String word : ngramWords){
+			key = append(key, id(word));
+		}
+		return key;
+	}
+	
+	/**
+	 * @param ngram space separated words, as written by ngram()
+	 */
+	public long key(String ngram){
+		List<String> ngramWords = new ArrayList<String>(MAX_N);
+		int start = 0;
+		int space;
+		while((space = ngram.indexOf(' ', start)) >= 0){
+			ngramWords.add(ngram.substring(start, space));
+			start = space + 1;
+		}
+		ngramWords.add(ngram.substring(start));
+		return key(ngramWords);
+	}
+	
+	/**
+	 * @return a 64 bit hash of the words of the n-gram, which unlike the key is the same in every run
+	 */
+	public long hash(long key){
+		long[] wordHashes = this.wordHashes;
+		long hash = FNV_OFFSET;
+		for(int shift = (MAX_N - 1) * BITS_PER_WORD; shift >= 0; shift -= BITS_PER_WORD){
+			int id = (int) ((key >>> shift) & WORD_MASK);
+			if(id != 0){
+				hash = (hash ^ wordHashes[id - 1]) * FNV_PRIME;
+				hash ^= hash >>> 32;
+			}
+		}
+		return hash;
+	}
+	
+	/**
+	 * FNV-1a
+	 */
+	private static long hash(String word){
+		long hash = FNV_OFFSET;
+		for(int i = 0; i < word.length(); i++){
+			hash = (hash ^ word.charAt(i)) * FNV_PRIME;
+		}
+		return hash;
+	}
+	
+	/**
+	 * @return the words of the n-gram, separated by spaces
+	 */
+	public String ngram(long key){
+		String ngram = word((int) (key & WORD_MASK));
+		key >>>= BITS_PER_WORD;
+		while(key != 0){
+			ngram = word((int) (key & WORD_MASK)) + " " + ngram;
+			key >>>= BITS_PER_WORD;
+		}
+		return ngram;
+	}
+}
@@ -0,0 +1,51 @@
+package dataset;
+
+/**
+ * The weights of the cosine similarities of unigrams, bigrams, trigrams, skip-bigrams and 
+ * skip-trigrams in TextWithNgrams.similarity(other, weights). Orders with weight 0 aren't
+ * compared at all.
+ * @author jonathan
+ *
+ */
+public class NgramWeights {
+	
+	/**
+	 * TextWithNgrams.similarity()
+	 */
+	public static final NgramWeights UNIGRAMS = new NgramWeights(1, 0, 0, 0, 0);
+	
+	/**
+	 * Ngrams.similarity(other, 1, 3), up to rounding
+	 */
+	public static final NgramWeights NGRAMS = new NgramWeights(1/3.0, 1/3.0, 1/3.0, 0, 0);
+	
+	/**
+	 * TextWithSkipgrams.similarity()
+	 */
+	public static final NgramWeights UNIGRAMS_AND_SKIP_BIGRAMS = new NgramWeights(1, 0, 0, 1, 0);
+	
+	private final double[] weights; //unigrams, bigrams, trigrams, skip-bigrams, skip-trigrams
+	
+	public NgramWeights(double unigram, double bigram, double trigram, double skipBigram, double skipTrigram){
+		weights = new double[]{unigram, bigram, trigram, skipBigram, skipTrigram};
+	}
+	
+	/**
+	 * @param n 1 - 3
+	 */
+	double ngram(int n){
+		return weights[n - 1];
+	}
+	
+	/**
+	 * @param n 2 - 3
+	 */
+	double skipgram(int n){
+		return weights[n + 1];
+	}
+	
+	public String toString(){
+		return String.format("uni: %.2f, bi: %.2f, tri: %.2f, skip-bi: %.2f, skip-tri: %.2f", 
+				weights[0], weights[1], weights[2], weights[3], weights[4]);
+	}
+}
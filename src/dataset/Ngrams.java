@@ -1,18 +1,24 @@
 package dataset;
 
-import gnu.trove.iterator.TObjectDoubleIterator;
-import gnu.trove.map.hash.TObjectDoubleHashMap;
+import gnu.trove.iterator.TLongDoubleIterator;
+import gnu.trove.map.hash.TLongDoubleHashMap;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import org.jsoup.nodes.Element;
 import org.jsoup.parser.Tag;
 
 import util.CosineSimilarity;
+import util.SparseVector;
 
 /**
  * Represents a set of n-grams (possibly skipgrams) for some n-values.
+ * The n-grams are stored by their keys in NgramVocabulary, and only
+ * written as text in the xml. For similarity() they are also kept as sorted sparse
+ * vectors, which are created when first needed.
  * @author jonathan
  *
  */
@@ -25,28 +31,36 @@ public class Ngrams {
 		"unigram", "bigram", "trigram"
 	};
 	
-	private List<TObjectDoubleHashMap<String>> ngramMaps;
+	private List<TLongDoubleHashMap> ngramMaps;
+	private volatile SparseVector[] vectors; //by n-1, null until needed and after add()
 	
 	public int size(int n){
 		return ngramMaps.get(n-1).size();
 	}
 	
 	public static Ngrams empty(int maxN){
-		List<TObjectDoubleHashMap<String>> ngramMaps = new ArrayList<TObjectDoubleHashMap<String>>();
+		List<TLongDoubleHashMap> ngramMaps = new ArrayList<TLongDoubleHashMap>();
 		for(int i = 1; i <= maxN; i ++){
-			ngramMaps.add(new TObjectDoubleHashMap<String>());
+			ngramMaps.add(new TLongDoubleHashMap());
 		}
 		return new Ngrams(ngramMaps);
 	}
 	
-	public Ngrams(List<TObjectDoubleHashMap<String>> ngramMaps){
+	public Ngrams(List<TLongDoubleHashMap> ngramMaps){
 		this.ngramMaps = ngramMaps;
 	}
 	
 	public double getNgram(int n, String ngram){
-		TObjectDoubleHashMap<String> map = ngramMaps.get(n - 1);
-		if(map.containsKey(ngram)){// && map.get(ngram) >= minCount){
-			return map.get(ngram);
+		return getNgram(n, NgramVocabulary.instance().key(ngram));
+	}
+	
+	/**
+	 * @param key see NgramVocabulary
+	 */
+	public double getNgram(int n, long key){
+		TLongDoubleHashMap map = ngramMaps.get(n - 1);
+		if(map.containsKey(key)){// && map.get(ngram) >= minCount){
+			return map.get(key);
 		}
 		return 0;
 	}
@@ -60,9 +74,7 @@ public class Ngrams {
 		double sum = 0; 
 		int max = Math.min(maxN, ngramMaps.size());
 		for(int i = minN-1; i < max; i++){
-			TObjectDoubleHashMap<String> mine = ngramMaps.get(i);
-			TObjectDoubleHashMap<String> others = other.ngramMaps.get(i);
-			sum += CosineSimilarity.calculateCosineSimilarity(mine, others);
+			sum += CosineSimilarity.calculateCosineSimilarity(vector(i), other.vector(i));
 		}
 		return sum / ((double)max-minN+1);
 		//I suppose similarity might in general be higher when sticking to low n-grams. 
@@ -78,12 +90,47 @@ public class Ngrams {
 	
 	
 	
+	/**
+	 * @return the cosine similarity of the n-grams of one n, 0 if either has none
+	 */
+	double similarity(Ngrams other, int n){
+		if(n > ngramMaps.size() || n > other.ngramMaps.size()){
+			return 0;
+		}
+		return CosineSimilarity.calculateCosineSimilarity(vector(n - 1), other.vector(n - 1));
+	}
+	
+	TLongDoubleHashMap map(int n){
+		return ngramMaps.get(n - 1);
+	}
+	
+	int maxN(){
+		return ngramMaps.size();
+	}
+	
+	/**
+	 * Several threads may compute similarities at the same time. At worst they
+	 * create the same vector more than once.
+	 */
+	private SparseVector vector(int i){
+		SparseVector[] vectors = this.vectors;
+		if(vectors == null){
+			vectors = new SparseVector[ngramMaps.size()];
+			this.vectors = vectors;
+		}
+		if(vectors[i] == null){
+			vectors[i] = SparseVector.of(ngramMaps.get(i));
+		}
+		return vectors[i];
+	}
+	
 	public void add(Ngrams other, boolean onlyIncrementOne){
 		if(ngramMaps.size() != other.ngramMaps.size()){
 			throw new IllegalArgumentException(ngramMaps.size() + " != " + other.ngramMaps.size());
 		}
+		vectors = null;
 		for(int i = 0; i < ngramMaps.size(); i++){
-			TObjectDoubleIterator<String> it = other.ngramMaps.get(i).iterator();
+			TLongDoubleIterator it = other.ngramMaps.get(i).iterator();
 			while(it.hasNext()){
 				it.advance();
 				double increment = onlyIncrementOne ? 1 : it.value();
@@ -92,6 +139,16 @@ public class Ngrams {
 		}
 	}
 	
+	/**
+	 * Removes all n-grams with a count below minCount.
+	 */
+	public void removeBelow(int minCount){
+		vectors = null;
+		for(TLongDoubleHashMap map : ngramMaps){
+			map.retainEntries((key, value) -> value >= minCount);
+		}
+	}
+	
 	public Element toXml(String tagName){
 		return toXml(tagName, 0);
 	}
@@ -99,23 +156,32 @@ public class Ngrams {
 	public Element toXml(String tagName, int minCount){
 		Element ngramsTag = new Element(Tag.valueOf(tagName), "");
 		for(int i = 0; i < ngramMaps.size(); i++){
-			TObjectDoubleHashMap<String> map = ngramMaps.get(i);
+			TLongDoubleHashMap map = ngramMaps.get(i);
 			ngramsTag.appendChild(mapToElement(map, TAG_MAP[i], TAG_ENTRY[i], minCount));
 		}
 		return ngramsTag;
 	}
 	
-	private Element mapToElement(TObjectDoubleHashMap<String> map, String mapName, String entryName, int minCount){
+	/**
+	 * The entries are sorted by text, so that equal Ngrams give the same xml, however
+	 * they were built.
+	 */
+	private Element mapToElement(TLongDoubleHashMap map, String mapName, String entryName, int minCount){
 		Element mapTag = new Element(Tag.valueOf(mapName), "");
-		TObjectDoubleIterator<String> it = map.iterator();
+		NgramVocabulary vocabulary = NgramVocabulary.instance();
+		TreeMap<String, Double> sortedEntries = new TreeMap<String, Double>();
+		TLongDoubleIterator it = map.iterator();
 		while(it.hasNext()){
 			it.advance();
 			if(it.value() >= minCount){
-				Element entryTag = mapTag.appendElement(entryName);
-				entryTag.text(it.key());
-				entryTag.attr("count", ""+it.value());
+				sortedEntries.put(vocabulary.ngram(it.key()), it.value());
 			}
 		}
+		for(Map.Entry<String, Double> entry : sortedEntries.entrySet()){
+			Element entryTag = mapTag.appendElement(entryName);
+			entryTag.text(entry.getKey());
+			entryTag.attr("count", ""+entry.getValue());
+		}
 		return mapTag;
 	}
 	
@@ -124,7 +190,7 @@ public class Ngrams {
 	}
 	
 	public static Ngrams fromXml(Element ngramsTag, int minCount){
-		List<TObjectDoubleHashMap<String>> maps = new ArrayList<TObjectDoubleHashMap<String>>();
+		List<TLongDoubleHashMap> maps = new ArrayList<TLongDoubleHashMap>();
 		for(int i = 0; i < 3; i++){
 			if(ngramsTag.select(TAG_MAP[i]).size() > 0){
 				maps.add(map(ngramsTag.select(TAG_MAP[i]).first(), TAG_ENTRY[i], minCount));
@@ -133,19 +199,26 @@ public class Ngrams {
 		return new Ngrams(maps);
 	}
 	
-	protected static TObjectDoubleHashMap<String> map(Element mapTag, String entryName, int minCount){
-		TObjectDoubleHashMap<String> mapObj = new TObjectDoubleHashMap<String>();
+	protected static TLongDoubleHashMap map(Element mapTag, String entryName, int minCount){
+		TLongDoubleHashMap mapObj = new TLongDoubleHashMap();
+		NgramVocabulary vocabulary = NgramVocabulary.instance();
 		for(Element entryTag : mapTag.select(entryName)){
 			double count = Double.parseDouble(entryTag.attr("count"));
-			String text = entryTag.text();
 			if(count >= minCount){
-				mapObj.put(text, count);
+				mapObj.put(vocabulary.key(entryTag.text()), count);
 			}
 		}
 		return mapObj;
 	}
 	
 	public String toString(){
-		return ngramMaps.toString();
+		NgramVocabulary vocabulary = NgramVocabulary.instance();
+		List<String> maps = new ArrayList<String>();
+		for(TLongDoubleHashMap map : ngramMaps){
+			List<String> entries = new ArrayList<String>();
+			map.forEachEntry((key, value) -> entries.add(vocabulary.ngram(key) + "=" + value));
+			maps.add("{" + String.join(",", entries) + "}");
+		}
+		return maps.toString();
 	}
 }
@@ -0,0 +1,56 @@
+package dataset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToDoubleBiFunction;
+
+/**
+ * Computes every similarity with a function of the two texts (Text.similarity(), a cache 
+ * lookup ...), and finds the most similar sentences by comparing the text with every sentence.
+ * Only the citers are kept, not the dataset, so that a map with weak dataset keys (as in 
+ * MRF_classifier) can still drop the dataset.
+ * @author jonathan
+ *
+ * @param <T>
+ */
+class PairwiseSimilarities<T extends Text> implements SimilarityProvider<T> {
+	
+	private final List<CitingPaper<T>> citers;
+	private final ToDoubleBiFunction<T, T> similarity;
+	
+	PairwiseSimilarities(Dataset<T> dataset, ToDoubleBiFunction<T, T> similarity){
+		this.citers = dataset.citers;
+		this.similarity = similarity;
+	}
+	
+	@Override
+	public double similarity(Sentence<T> sentence, T text){
+		return similarity(sentence.text, text);
+	}
+	
+	@Override
+	public double similarity(T a, T b){
+		return similarity.applyAsDouble(a, b);
+	}
+	
+	@Override
+	public List<SimilarSentence<T>> mostSimilar(T text, int k){
+		TopSimilarities top = new TopSimilarities(k);
+		List<SimilarSentence<T>> sentences = new ArrayList<SimilarSentence<T>>();
+		for(CitingPaper<T> citer : citers){
+			for(Sentence<T> sentence : citer.sentences){
+				double similarity = similarity(sentence, text);
+				if(similarity > 0 && top.offer(sentences.size(), similarity)){
+					sentences.add(new SimilarSentence<T>(citer.title, sentence, similarity));
+				}else{
+					sentences.add(null);
+				}
+			}
+		}
+		List<SimilarSentence<T>> mostSimilar = new ArrayList<SimilarSentence<T>>();
+		for(int row : top.rows()){
+			mostSimilar.add(sentences.get(row));
+		}
+		return mostSimilar;
+	}
+}
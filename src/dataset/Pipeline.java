@@ -0,0 +1,135 @@
+package dataset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Stages that each run on their own threads and are connected by bounded queues, so that a
+ * slow stage can be given more threads, and a fast one can't run far ahead of it and fill the
+ * memory. A stage takes items from its input queue and emits any number of items to its
+ * output queue. Every queue ends with END, which a stage passes on when all its threads are done.
+ * If a stage throws an exception or an error, all threads are stopped and take() throws it.
+ * The pipeline must be stopped with stop() when the caller is done with it, also if the caller fails.
+ * @author jonathan
+ *
+ */
+class Pipeline {
+	
+	private static final Object END = new Object();
+	
+	private final Thread owner = Thread.currentThread();
+	private final List<Thread> threads = new ArrayList<Thread>();
+	private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+	
+	/**
+	 * @return a queue of the items, for the first stage
+	 */
+	BlockingQueue<Object> source(List<?> items){
+		BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>(items);
+		queue.add(END);
+		return queue;
+	}
+	
+	/**
+	 * Adds a stage, which is started by start().
+	 * @param work is called with each input item, and a consumer of output items
+	 * @return the output queue
+	 */
+	<I, O> BlockingQueue<Object> stage(String name, int numThreads, BlockingQueue<Object> in, int capacity,
+			BiConsumer<I, Consumer<O>> work){
+		if(numThreads < 1){
+			throw new IllegalArgumentException(name + " threads: " + numThreads);
+		}
+		BlockingQueue<Object> out = new ArrayBlockingQueue<Object>(capacity);
+		Consumer<O> emit = item -> put(out, item);
+		AtomicInteger running = new AtomicInteger(numThreads);
+		for(int i = 0; i < numThreads; i++){
+			Thread thread = new Thread(() -> {
+				try{
+					Object item;
+					while((item = in.take()) != END){
+						@SuppressWarnings("unchecked")
+						I input = (I) item;
+						work.accept(input, emit);
+					}
+					in.put(END); //for the other threads of this stage
+					if(running.decrementAndGet() == 0){
+						out.put(END);
+					}
+				}catch(InterruptedException | CancellationException e){
+					//stopped, since another stage failed
+				}catch(Throwable e){ //also errors, e.g. a StackOverflowError of the lemmatizer
+					fail(e);
+				}
+			}, name + "-" + i);
+			thread.setDaemon(true);
+			threads.add(thread);
+		}
+		return out;
+	}
+	
+	private static void put(BlockingQueue<Object> queue, Object item){
+		try {
+			queue.put(item);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException();
+		}
+	}
+	
+	private void fail(Throwable e){
+		if(failure.compareAndSet(null, e)){
+			for(Thread thread : threads){
+				thread.interrupt();
+			}
+			owner.interrupt();
+		}
+	}
+	
+	/**
+	 * Stops all threads, without interrupting the caller. Threads that are done are left as they are.
+	 */
+	void stop(){
+		failure.compareAndSet(null, new CancellationException("Pipeline stopped"));
+		for(Thread thread : threads){
+			thread.interrupt();
+		}
+	}
+	
+	void start(){
+		for(Thread thread : threads){
+			thread.start();
+		}
+	}
+	
+	/**
+	 * Waits for the next item of a queue. Must be called by the thread that created the pipeline.
+	 * @return null at the end of the queue
+	 */
+	@SuppressWarnings("unchecked")
+	<T> T take(BlockingQueue<Object> queue){
+		try {
+			Object item = queue.take();
+			return item == END ? null : (T) item;
+		} catch (InterruptedException e) {
+			Throwable failure = this.failure.get();
+			if(failure instanceof RuntimeException){
+				throw (RuntimeException) failure;
+			}else if(failure instanceof Error){
+				throw (Error) failure;
+			}else if(failure != null){
+				throw new IllegalStateException("The pipeline failed", failure);
+			}
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the pipeline", e);
+		}
+	}
+}
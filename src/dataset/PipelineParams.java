@@ -0,0 +1,41 @@
+package dataset;
+
+/**
+ * Parameters of the pipeline that creates datasets from HTML (see DatasetFactory.fromHtmlDir()):
+ * the number of threads of each stage, and the capacity of the queues between them.
+ * Texts are created by several threads at once, as in DatasetFactory.fromOtherRaw().
+ * @author jonathan
+ *
+ */
+public class PipelineParams {
+	public final int parseThreads;
+	public final int splitThreads;
+	public final int lemmatizeThreads;
+	public final int featureThreads;
+	public final int queueCapacity;
+	
+	/**
+	 * Lemmatizing takes most of the time, so it gets a thread per processor.
+	 * @return
+	 */
+	public static PipelineParams defaults(){
+		int numProcessors = Runtime.getRuntime().availableProcessors();
+		return new PipelineParams(1, 1, numProcessors, Math.max(1, numProcessors / 2), 1024);
+	}
+	
+	/**
+	 * One thread per stage
+	 * @return
+	 */
+	public static PipelineParams sequential(){
+		return new PipelineParams(1, 1, 1, 1, 1024);
+	}
+	
+	public PipelineParams(int parseThreads, int splitThreads, int lemmatizeThreads, int featureThreads, int queueCapacity){
+		this.parseThreads = parseThreads;
+		this.splitThreads = splitThreads;
+		this.lemmatizeThreads = lemmatizeThreads;
+		this.featureThreads = featureThreads;
+		this.queueCapacity = queueCapacity;
+	}
+}
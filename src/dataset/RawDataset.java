@@ -0,0 +1,109 @@
+package dataset;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.Elements;
+
+import util.Printer;
+
+/**
+ * A dataset as it is read from the HTML, with the raw text of every sentence, before any texts
+ * are created. The texts are numbered (see raw()): first all sentences, citer by citer, and
+ * then the cited title, the merged explicit citations and the cited content. So they can be
+ * created in any order, and toDataset() still puts every sentence in its place.
+ * @author jonathan
+ *
+ */
+class RawDataset {
+	
+	private static Printer printer = new Printer(true);
+	
+	final String label;
+	private final String citedMainAuthor;
+	private final List<String> citerTitles = new ArrayList<String>();
+	private final List<List<String>> sentiments = new ArrayList<List<String>>(); //by citer
+	private final List<String> raws = new ArrayList<String>();
+	
+	private RawDataset(String label, String citedMainAuthor){
+		this.label = label;
+		this.citedMainAuthor = citedMainAuthor;
+	}
+	
+	static RawDataset fromHtml(String label, Document doc, String citedContent){
+		String citedTitle = doc.select(".dstPaperTitle").get(0).text();
+		String[] citedAuthors = doc.select(".dstPaperAuthors").get(0).text().split(";");
+		String mainAuthorLastName = citedAuthors[0].split(",")[0];
+		RawDataset dataset = new RawDataset(label, mainAuthorLastName);
+		
+		Elements citerElements = doc.select("table.srcPaper > tbody > tr");
+		StringBuilder mergedExplicitCitations = new StringBuilder();
+		for(Element citer : citerElements){
+			String citerTitle = citer.childNode(1).attr("title");
+			List<String> citerSentiments = new ArrayList<String>();
+			for(int i = 3; i < citer.childNodeSize(); i+= 2){
+				Node line = citer.childNode(i);
+				String sentiment = getTypeFromClassAttr(line.attr("class"));
+				String rawText = line.attr("title").split("\t")[1].trim().replaceAll(" +", " ");
+				if(DatasetFactory.isStartOfReferencesSection(rawText)){
+					printer.println("'" + citerTitle + "' reached start of references at " + i + " / " + citer.childNodeSize());
+					break;
+				}
+				citerSentiments.add(sentiment);
+				dataset.raws.add(rawText);
+				if(Sentence.typeFromSentiment(sentiment) == SentenceType.EXPLICIT_REFERENCE){
+					mergedExplicitCitations.append(rawText + "\n");
+				}
+			}
+			dataset.citerTitles.add(citerTitle);
+			dataset.sentiments.add(citerSentiments);
+		}
+		dataset.raws.add(citedTitle);
+		dataset.raws.add(mergedExplicitCitations.toString());
+		dataset.raws.add(citedContent);
+		return dataset;
+	}
+	
+	private static String getTypeFromClassAttr(String classes){
+		return classes.split(" ")[1];
+	}
+	
+	int numTexts(){
+		return raws.size();
+	}
+	
+	int numSentences(){
+		return raws.size() - 3;
+	}
+	
+	String raw(int textIndex){
+		return raws.get(textIndex);
+	}
+	
+	/**
+	 * @param texts created from raw(0), raw(1), ...
+	 */
+	<T extends Text> Dataset<T> toDataset(List<T> texts){
+		if(texts.size() != raws.size()){
+			throw new IllegalArgumentException(texts.size() + " texts for " + raws.size() + " raw texts");
+		}
+		List<CitingPaper<T>> citers = new ArrayList<CitingPaper<T>>();
+		int textIndex = 0;
+		for(int c = 0; c < citerTitles.size(); c++){
+			List<Sentence<T>> sentences = new ArrayList<Sentence<T>>();
+			for(String sentiment : sentiments.get(c)){
+				sentences.add(new Sentence<T>(sentiment, texts.get(textIndex), sentences.size()));
+				textIndex ++;
+			}
+			citers.add(new CitingPaper<T>(citerTitles.get(c), sentences));
+		}
+		T citedTitle = texts.get(textIndex);
+		T mergedExplicitCitations = texts.get(textIndex + 1);
+		Dataset<T> dataset = Dataset.withoutCitedData(label, citedMainAuthor, citedTitle, citers, mergedExplicitCitations);
+		dataset.citedContent = texts.get(textIndex + 2);
+		return dataset;
+	}
+}
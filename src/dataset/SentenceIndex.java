@@ -0,0 +1,229 @@
+package dataset;
+
+import gnu.trove.map.hash.TLongDoubleHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An inverted index from unigram keys to the sentences of a dataset that contain them, 
+ * with their tf-idf scores. Gives the same similarities as TextWithNgrams.similarity() 
+ * (unigram cosine similarity), but computes those of a text to all sentences at once 
+ * by going through the postings of its own unigrams only, and remembers them per text. 
+ * mostSimilar() prunes sentences that can't reach the top k with MaxScore: the unigrams 
+ * whose summed best-case contributions can't beat the current k:th best are only looked 
+ * up for sentences that the other unigrams have already made candidates.
+ * Sentences that were added to the dataset after the index was built are compared pairwise.
+ * @author jonathan
+ *
+ */
+public class SentenceIndex implements SimilarityProvider<TextWithNgrams> {
+	
+	private final List<Sentence<TextWithNgrams>> sentences = new ArrayList<Sentence<TextWithNgrams>>(); //by row
+	private final List<String> citerTitles = new ArrayList<String>(); //by row
+	private final Map<Sentence<TextWithNgrams>, Integer> rows = new IdentityHashMap<Sentence<TextWithNgrams>, Integer>();
+	private final double[] norms; //by row
+	private final TLongObjectHashMap<Postings> postings = new TLongObjectHashMap<Postings>();
+	private final Map<TextWithNgrams, double[]> similaritiesByText = new ConcurrentHashMap<TextWithNgrams, double[]>(); //Text has identity equality
+	
+	/**
+	 * The sentences that contain a unigram, in increasing row order.
+	 */
+	private static class Postings {
+		int[] rows = new int[2];
+		double[] scores = new double[2]; //tf-idf
+		int size;
+		double maxNormalized; //largest score / norm of the sentence
+		
+		void add(int row, double score, double norm){
+			if(size == rows.length){
+				rows = Arrays.copyOf(rows, 2 * size);
+				scores = Arrays.copyOf(scores, 2 * size);
+			}
+			rows[size] = row;
+			scores[size] = score;
+			size++;
+			if(norm > 0){
+				maxNormalized = Math.max(maxNormalized, score / norm);
+			}
+		}
+		
+		/**
+		 * @return the first position at or after 'from' whose row is at least 'row'
+		 */
+		int seek(int from, int row){
+			int step = 1;
+			int to = from;
+			while(to < size && rows[to] < row){
+				from = to + 1;
+				to += step;
+				step *= 2;
+			}
+			int pos = Arrays.binarySearch(rows, from, Math.min(to + 1, size), row);
+			return pos >= 0 ? pos : -pos - 1;
+		}
+	}
+	
+	public SentenceIndex(Dataset<TextWithNgrams> dataset){
+		for(CitingPaper<TextWithNgrams> citer : dataset.citers){
+			for(Sentence<TextWithNgrams> sentence : citer.sentences){
+				rows.put(sentence, sentences.size());
+				sentences.add(sentence);
+				citerTitles.add(citer.title);
+			}
+		}
+		norms = new double[sentences.size()];
+		for(int row = 0; row < sentences.size(); row++){
+			TLongDoubleHashMap unigrams = unigrams(sentences.get(row).text);
+			double squareSum = 0;
+			long[] keys = sortedKeys(unigrams);
+			for(long key : keys){
+				squareSum += unigrams.get(key) * unigrams.get(key);
+			}
+			norms[row] = Math.sqrt(squareSum);
+			for(long key : keys){
+				Postings keyPostings = postings.get(key);
+				if(keyPostings == null){
+					keyPostings = new Postings();
+					postings.put(key, keyPostings);
+				}
+				keyPostings.add(row, unigrams.get(key), norms[row]);
+			}
+		}
+	}
+	
+	public int size(){
+		return sentences.size();
+	}
+	
+	@Override
+	public double similarity(Sentence<TextWithNgrams> sentence, TextWithNgrams text){
+		Integer row = rows.get(sentence);
+		if(row == null){
+			return sentence.text.similarity(text);
+		}
+		return similaritiesByText.computeIfAbsent(text, this::allSimilarities)[row];
+	}
+	
+	/**
+	 * Term at a time. The dot products are summed in increasing key order, like 
+	 * SparseVector.dot(), so the similarities are exactly those of TextWithNgrams.similarity().
+	 */
+	private double[] allSimilarities(TextWithNgrams text){
+		double[] dots = new double[sentences.size()];
+		TLongDoubleHashMap unigrams = unigrams(text);
+		long[] keys = sortedKeys(unigrams);
+		double squareSum = 0;
+		for(long key : keys){
+			double score = unigrams.get(key);
+			squareSum += score * score;
+			Postings keyPostings = postings.get(key);
+			if(keyPostings != null){
+				for(int i = 0; i < keyPostings.size; i++){
+					dots[keyPostings.rows[i]] += score * keyPostings.scores[i];
+				}
+			}
+		}
+		double norm = Math.sqrt(squareSum);
+		for(int row = 0; row < dots.length; row++){
+			boolean empty = keys.length == 0 || unigrams(sentences.get(row).text).isEmpty();
+			dots[row] = empty ? 0 : dots[row] / (norm * norms[row]);
+		}
+		return dots;
+	}
+	
+	@Override
+	public List<SimilarSentence<TextWithNgrams>> mostSimilar(TextWithNgrams text, int k){
+		TLongDoubleHashMap unigrams = unigrams(text);
+		double squareSum = 0;
+		for(double score : unigrams.values()){
+			squareSum += score * score;
+		}
+		double norm = Math.sqrt(squareSum);
+		List<Postings> termPostings = new ArrayList<Postings>();
+		List<Double> termWeights = new ArrayList<Double>(); //normalized query scores
+		for(long key : sortedKeys(unigrams)){
+			Postings keyPostings = postings.get(key);
+			if(keyPostings != null){
+				termPostings.add(keyPostings);
+				termWeights.add(unigrams.get(key) / norm);
+			}
+		}
+		int numTerms = termPostings.size();
+		Integer[] order = new Integer[numTerms];
+		double[] bounds = new double[numTerms];
+		for(int t = 0; t < numTerms; t++){
+			order[t] = t;
+			bounds[t] = termWeights.get(t) * termPostings.get(t).maxNormalized;
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(bounds[a], bounds[b]));
+		
+		//Terms by increasing bound, and the sum of the bounds of each term and those before it
+		Postings[] terms = new Postings[numTerms];
+		double[] weights = new double[numTerms];
+		double[] boundSums = new double[numTerms];
+		for(int t = 0; t < numTerms; t++){
+			terms[t] = termPostings.get(order[t]);
+			weights[t] = termWeights.get(order[t]);
+			boundSums[t] = bounds[order[t]] + (t > 0 ? boundSums[t-1] : 0);
+		}
+		
+		int[] positions = new int[numTerms];
+		TopSimilarities top = new TopSimilarities(k);
+		int firstEssential = 0; //terms before this can't make a sentence a candidate on their own
+		while(firstEssential < numTerms){
+			int row = Integer.MAX_VALUE;
+			for(int t = firstEssential; t < numTerms; t++){
+				if(positions[t] < terms[t].size){
+					row = Math.min(row, terms[t].rows[positions[t]]);
+				}
+			}
+			if(row == Integer.MAX_VALUE){
+				break;
+			}
+			double similarity = 0;
+			for(int t = firstEssential; t < numTerms; t++){
+				if(positions[t] < terms[t].size && terms[t].rows[positions[t]] == row){
+					similarity += weights[t] * terms[t].scores[positions[t]] / norms[row];
+					positions[t]++;
+				}
+			}
+			for(int t = firstEssential - 1; t >= 0; t--){
+				if(similarity + boundSums[t] <= top.threshold() && top.isFull()){
+					break;
+				}
+				positions[t] = terms[t].seek(positions[t], row);
+				if(positions[t] < terms[t].size && terms[t].rows[positions[t]] == row){
+					similarity += weights[t] * terms[t].scores[positions[t]] / norms[row];
+				}
+			}
+			if(similarity > 0 && top.offer(row, similarity) && top.isFull()){
+				while(firstEssential < numTerms && boundSums[firstEssential] <= top.threshold()){
+					firstEssential++;
+				}
+			}
+		}
+		
+		List<SimilarSentence<TextWithNgrams>> mostSimilar = new ArrayList<SimilarSentence<TextWithNgrams>>();
+		for(int row : top.rows()){
+			Sentence<TextWithNgrams> sentence = sentences.get(row);
+			mostSimilar.add(new SimilarSentence<TextWithNgrams>(citerTitles.get(row), sentence, sentence.text.similarity(text)));
+		}
+		return mostSimilar;
+	}
+	
+	private static TLongDoubleHashMap unigrams(TextWithNgrams text){
+		return text.ngramsTfIdf.map(1);
+	}
+	
+	private static long[] sortedKeys(TLongDoubleHashMap map){
+		long[] keys = map.keys();
+		Arrays.sort(keys);
+		return keys;
+	}
+}
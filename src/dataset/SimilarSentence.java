@@ -0,0 +1,24 @@
+package dataset;
+
+/**
+ * A sentence of a dataset and its similarity to some text, see SimilarityProvider.mostSimilar().
+ * @author jonathan
+ *
+ * @param <T>
+ */
+public class SimilarSentence<T extends Text> {
+	
+	public final SentenceKey<T> key;
+	public final Sentence<T> sentence;
+	public final double similarity;
+	
+	public SimilarSentence(String citerTitle, Sentence<T> sentence, double similarity){
+		key = new SentenceKey<T>(citerTitle, sentence.sentenceIndex);
+		this.sentence = sentence;
+		this.similarity = similarity;
+	}
+	
+	public String toString(){
+		return key + ": " + similarity;
+	}
+}
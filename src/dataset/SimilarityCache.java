@@ -0,0 +1,128 @@
+package dataset;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of Text.similarity(), shared between everything that compares the same texts
+ * (several classifiers, or the features of both classifiers). The key is the pair of text ids,
+ * in increasing order when the similarity is symmetric (see Text.symmetricSimilarity()), so 
+ * that a pair is only stored once. Thread-safe: the pairs are spread over segments, each an LRU 
+ * map behind its own lock. Similarities are computed outside of the locks, so two threads that 
+ * miss the same pair at the same time both compute it.
+ * @author jonathan
+ *
+ */
+public class SimilarityCache {
+	
+	private static final int NUM_SEGMENTS = 16; //a power of two
+	
+	private final Segment[] segments = new Segment[NUM_SEGMENTS];
+	private final int capacity;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	
+	private class Segment extends LinkedHashMap<Long, Double>{
+		private static final long serialVersionUID = 1L;
+		private final int segmentCapacity;
+		
+		Segment(int segmentCapacity){
+			super(16, 0.75f, true);
+			this.segmentCapacity = segmentCapacity;
+		}
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Double> eldest){
+			if(size() > segmentCapacity){
+				evictions.increment();
+				return true;
+			}
+			return false;
+		}
+	}
+	
+	/**
+	 * @param capacity the maximum number of pairs kept
+	 */
+	public SimilarityCache(int capacity){
+		if(capacity < NUM_SEGMENTS){
+			throw new IllegalArgumentException("capacity: " + capacity);
+		}
+		this.capacity = capacity;
+		for(int i = 0; i < NUM_SEGMENTS; i++){
+			segments[i] = new Segment(capacity / NUM_SEGMENTS);
+		}
+	}
+	
+	/**
+	 * @return a.similarity(b)
+	 */
+	public double similarity(Text a, Text b){
+		long key = key(a, b);
+		Segment segment = segments[segment(key)];
+		Double similarity;
+		synchronized(segment){
+			similarity = segment.get(key);
+		}
+		if(similarity != null){
+			hits.increment();
+			return similarity;
+		}
+		misses.increment();
+		double computed = a.similarity(b);
+		synchronized(segment){
+			segment.put(key, computed);
+		}
+		return computed;
+	}
+	
+	private static long key(Text a, Text b){
+		int first = a.id;
+		int second = b.id;
+		if(first > second && a.getClass() == b.getClass() && a.symmetricSimilarity()){
+			first = b.id;
+			second = a.id;
+		}
+		return ((long) first << Integer.SIZE) | (second & 0xffffffffL);
+	}
+	
+	private static int segment(long key){
+		long h = key * 0x9e3779b97f4a7c15L;
+		return (int) (h >>> (Long.SIZE - Integer.numberOfTrailingZeros(NUM_SEGMENTS)));
+	}
+	
+	public long hits(){
+		return hits.sum();
+	}
+	
+	public long misses(){
+		return misses.sum();
+	}
+	
+	public long evictions(){
+		return evictions.sum();
+	}
+	
+	public double hitRate(){
+		long hits = hits();
+		long lookups = hits + misses();
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+	
+	public int size(){
+		int size = 0;
+		for(Segment segment : segments){
+			synchronized(segment){
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+	
+	public String toString(){
+		return String.format("similarity cache: %d/%d pairs, %d hits, %d misses (hit rate %.1f%%), %d evictions", 
+				size(), capacity, hits(), misses(), 100 * hitRate(), evictions());
+	}
+}
@@ -0,0 +1,49 @@
+package dataset;
+
+import java.util.List;
+
+/**
+ * Similarities between the sentences of one dataset and other texts, as used by the classifiers.
+ * pairwise() computes Text.similarity() for one pair at a time, cached() looks the pairs up 
+ * in a SimilarityCache first, weighted() combines the n-gram orders differently, and 
+ * SentenceIndex answers from an inverted index.
+ * @author jonathan
+ *
+ * @param <T>
+ */
+public interface SimilarityProvider<T extends Text> {
+	
+	/**
+	 * @return sentence.text.similarity(text)
+	 */
+	double similarity(Sentence<T> sentence, T text);
+	
+	/**
+	 * @return a.similarity(b), for two texts of the dataset (e.g. neighbouring sentences)
+	 */
+	default double similarity(T a, T b){
+		return a.similarity(b);
+	}
+	
+	/**
+	 * @return the (at most) k sentences of the dataset that are most similar to the text, most 
+	 * similar first. Sentences with similarity 0 aren't included. Ties go to the earlier sentence.
+	 */
+	List<SimilarSentence<T>> mostSimilar(T text, int k);
+	
+	public static <T extends Text> SimilarityProvider<T> pairwise(Dataset<T> dataset){
+		return new PairwiseSimilarities<T>(dataset, (a, b) -> a.similarity(b));
+	}
+	
+	public static <T extends Text> SimilarityProvider<T> cached(Dataset<T> dataset, SimilarityCache cache){
+		return new PairwiseSimilarities<T>(dataset, cache::similarity);
+	}
+	
+	/**
+	 * Similarities with other weights of the n-gram and skip-gram orders than those of the 
+	 * text class, see TextWithNgrams.similarity(other, weights)
+	 */
+	public static <T extends TextWithNgrams> SimilarityProvider<T> weighted(Dataset<T> dataset, NgramWeights weights){
+		return new PairwiseSimilarities<T>(dataset, (a, b) -> a.similarity(b, weights));
+	}
+}
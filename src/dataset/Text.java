@@ -2,6 +2,7 @@ package dataset;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import org.jsoup.nodes.Element;
@@ -16,7 +17,9 @@ import org.jsoup.parser.Tag;
 public class Text {
 	
 	protected static final String XML_TEXT_CLASS = "text";
+	private static final AtomicInteger NEXT_ID = new AtomicInteger();
 	
+	public final int id = NEXT_ID.getAndIncrement(); //Unique within the run, see SimilarityCache
 	public String raw;
 	public List<String> rawWords;
 	public List<String> lemmas;
@@ -61,4 +64,11 @@ public class Text {
 	public double similarity(Object other) {
 		throw new UnsupportedOperationException();
 	}
+	
+	/**
+	 * Whether similarity(other) == other.similarity(this), exactly, for texts of this class.
+	 */
+	public boolean symmetricSimilarity(){
+		return false;
+	}
 }
@@ -18,10 +18,15 @@ public class TextFactory {
 	
 	private final static int MAX_NGRAM_N = 3;
 	
-	@SuppressWarnings("unchecked")
 	public static <T extends Text> T createText(TextParams<T> params, String raw){
-		
-		List<String> lemmas = Lemmatizer.instance().lemmatize(raw);
+		return createText(params, raw, Lemmatizer.instance().lemmatize(raw));
+	}
+	
+	/**
+	 * @param lemmas of raw, from the Lemmatizer
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends Text> T createText(TextParams<T> params, String raw, List<String> lemmas){
 		ArrayList<String> rawWords = TextUtil.split(raw).collect(Collectors.toCollection(ArrayList::new));
 		
 		if(params.textClass.equals(TextWithNgrams.class)){
@@ -29,6 +34,11 @@ public class TextFactory {
 			return (T) new TextWithNgrams(raw, rawWords, lemmas, ngramsTfIdf);
 		}
 		
+		else if(params.textClass.equals(TextWithHashedNgrams.class)){
+			Ngrams ngramsTfIdf = NgramExtractor.ngramsTfIdf(MAX_NGRAM_N, lemmas, params.ngramIdf);
+			return (T) new TextWithHashedNgrams(raw, rawWords, lemmas, ngramsTfIdf);
+		}
+		
 		else if(params.textClass.equals(TextWithSkipgrams.class)){
 			Ngrams[] nAndSkipgrams = NgramExtractor.nAndSkipgramsTfIdf(MAX_NGRAM_N, lemmas, params.ngramIdf, params.skipgramIdf);
 			Ngrams ngramsTfIdf = nAndSkipgrams[0];
@@ -34,6 +34,12 @@ public class TextParams<T extends Text>{
 		return p;
 	}
 	
+	public static TextParams<TextWithHashedNgrams> withHashedNgrams(NgramIdf ngramIdf){
+		TextParams<TextWithHashedNgrams> p = new TextParams<TextWithHashedNgrams>(TextWithHashedNgrams.class);
+		p.ngramIdf = ngramIdf;
+		return p;
+	}
+	
 	public static TextParams<TextWithSspace> withSSpace(NgramIdf ngramIdf, SSpaceWrapper sspace){
 		TextParams<TextWithSspace> p = new TextParams<TextWithSspace>(TextWithSspace.class);
 		p.ngramIdf = ngramIdf;
@@ -44,7 +44,7 @@ public class TextUtil {
 	
 	private static TextUtil instance;
 	
-	public static TextUtil instance(){
+	public static synchronized TextUtil instance(){ //NgramIdf is built in parallel
 		if(instance == null){
 			instance = new TextUtil();
 		}
@@ -0,0 +1,174 @@
+package dataset;
+
+import gnu.trove.iterator.TLongDoubleIterator;
+import gnu.trove.map.hash.TIntFloatHashMap;
+import gnu.trove.map.hash.TLongDoubleHashMap;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.jsoup.nodes.Element;
+
+/**
+ * A TextWithNgrams whose uni-, bi- and trigram tf-idf scores are also hashed into a vector
+ * of 2^16 - 2^18 buckets (the hashing trick). The scores of each n are normalized
+ * and scaled by 1/sqrt(3), and every n-gram adds its score to one bucket with a sign taken
+ * from its hash, so that collisions cancel out on average. The similarity is then a dot 
+ * product, which approximates ngramsTfIdf.similarity(other, 1, 3): the mean of the 
+ * cosine similarities for n = 1, 2, 3. A sentence only fills a few buckets, so only those
+ * are kept, with their values, and the product is summed over the buckets that both texts fill.
+ * @author jonathan
+ *
+ */
+public class TextWithHashedNgrams extends TextWithNgrams{
+	
+	protected static final String XML_TEXT_CLASS = "text-with-hashed-ngrams";
+	
+	public static final int MIN_LOG2_BUCKETS = 16;
+	public static final int MAX_LOG2_BUCKETS = 18;
+	public static final int DEFAULT_LOG2_BUCKETS = MIN_LOG2_BUCKETS;
+	private static final int MAX_N = 3;
+	
+	private final int numBuckets;
+	private final int[] buckets; //the non-zero ones, increasing
+	private final float[] values; //of the buckets
+	
+	public TextWithHashedNgrams(String raw, List<String> rawWords, List<String> lemmas, 
+			Ngrams ngramsTfIdf) {
+		this(raw, rawWords, lemmas, ngramsTfIdf, DEFAULT_LOG2_BUCKETS);
+	}
+	
+	public TextWithHashedNgrams(String raw, List<String> rawWords, List<String> lemmas, 
+			Ngrams ngramsTfIdf, int log2Buckets) {
+		super(raw, rawWords, lemmas, ngramsTfIdf);
+		if(log2Buckets < MIN_LOG2_BUCKETS || log2Buckets > MAX_LOG2_BUCKETS){
+			throw new IllegalArgumentException("log2Buckets: " + log2Buckets);
+		}
+		numBuckets = 1 << log2Buckets;
+		TIntFloatHashMap hashed = hash(ngramsTfIdf, log2Buckets);
+		buckets = IntStream.of(hashed.keys()).filter(bucket -> hashed.get(bucket) != 0).sorted().toArray();
+		values = new float[buckets.length];
+		for(int i = 0; i < buckets.length; i++){
+			values[i] = hashed.get(buckets[i]);
+		}
+	}
+	
+	private static TIntFloatHashMap hash(Ngrams ngrams, int log2Buckets){
+		NgramVocabulary vocabulary = NgramVocabulary.instance();
+		TIntFloatHashMap buckets = new TIntFloatHashMap();
+		for(int n = 1; n <= MAX_N; n++){
+			TLongDoubleHashMap scores = ngrams.map(n);
+			double squareSum = 0;
+			for(double score : scores.values()){
+				squareSum += score * score;
+			}
+			if(squareSum == 0){
+				continue;
+			}
+			double scale = 1 / Math.sqrt(squareSum * MAX_N);
+			TLongDoubleIterator it = scores.iterator();
+			while(it.hasNext()){
+				it.advance();
+				long hash = mix(vocabulary.hash(it.key()));
+				int bucket = (int) (hash >>> (Long.SIZE - log2Buckets));
+				double sign = (hash & 1) == 0 ? 1 : -1;
+				float value = (float) (sign * it.value() * scale);
+				buckets.adjustOrPutValue(bucket, value, value);
+			}
+		}
+		return buckets;
+	}
+	
+	/**
+	 * The finalizer of MurmurHash3. The high bits of NgramVocabulary.hash() are too alike for 
+	 * short n-grams to be used as buckets directly.
+	 */
+	private static long mix(long h){
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb93fe53a87c5L;
+		h ^= h >>> 33;
+		return h;
+	}
+	
+	@Override
+	protected Element toXml(){
+		Element text = super.toXml();
+		text.attr("class", XML_TEXT_CLASS);
+		return text;
+	}
+	
+	/**
+	 * The buckets aren't stored, but hashed again from the n-grams, so this also reads the 
+	 * texts of a TextWithNgrams dataset.
+	 */
+	public static TextWithHashedNgrams fromXml(Element textTag){
+		TextWithNgrams text = TextWithNgrams.fromXml(textTag);
+		return new TextWithHashedNgrams(text.raw, text.rawWords, text.lemmas, text.ngramsTfIdf);
+	}
+	
+	@Override
+	public double similarity(Object o){
+		TextWithHashedNgrams other = (TextWithHashedNgrams)o;
+		if(numBuckets != other.numBuckets){
+			throw new IllegalArgumentException("this: " + numBuckets + " buckets. Other: " + other.numBuckets + " buckets.");
+		}
+		float sum = 0;
+		int i = 0, j = 0;
+		while(i < buckets.length && j < other.buckets.length){
+			if(buckets[i] < other.buckets[j]){
+				i++;
+			}else if(buckets[i] > other.buckets[j]){
+				j++;
+			}else{
+				sum += values[i] * other.values[j];
+				i++;
+				j++;
+			}
+		}
+		return sum;
+	}
+	
+	/**
+	 * @return all buckets, including the zeros. Takes 4 bytes per bucket, so it's only for
+	 * comparing with the sparse similarity.
+	 */
+	public float[] toDense(){
+		float[] dense = new float[numBuckets];
+		for(int i = 0; i < buckets.length; i++){
+			dense[buckets[i]] = values[i];
+		}
+		return dense;
+	}
+	
+	/**
+	 * The same as similarity(), as a dot product over all buckets. Both texts are made dense first.
+	 */
+	public double denseSimilarity(TextWithHashedNgrams other){
+		if(numBuckets != other.numBuckets){
+			throw new IllegalArgumentException("this: " + numBuckets + " buckets. Other: " + other.numBuckets + " buckets.");
+		}
+		return dot(toDense(), other.toDense());
+	}
+	
+	/**
+	 * Eight independent sums over a branch-free loop. The JIT won't reorder a single float sum 
+	 * (it would change the rounding), so that loop waits on every addition, while these sums 
+	 * can be computed side by side. The lengths are powers of two of at least 2^16.
+	 */
+	public static float dot(float[] a, float[] b){
+		float s0 = 0, s1 = 0, s2 = 0, s3 = 0, s4 = 0, s5 = 0, s6 = 0, s7 = 0;
+		for(int i = 0; i < a.length; i += 8){
+			s0 += a[i] * b[i];
+			s1 += a[i+1] * b[i+1];
+			s2 += a[i+2] * b[i+2];
+			s3 += a[i+3] * b[i+3];
+			s4 += a[i+4] * b[i+4];
+			s5 += a[i+5] * b[i+5];
+			s6 += a[i+6] * b[i+6];
+			s7 += a[i+7] * b[i+7];
+		}
+		return ((s0 + s1) + (s2 + s3)) + ((s4 + s5) + (s6 + s7));
+	}
+}
@@ -15,6 +15,7 @@ public class TextWithNgrams extends Text{
 	private static final String TAG_NGRAMS_TF_IDF = "ngrams-tf-idf";
 	
 	protected final static int NGRAM_MIN_COUNT = 5;
+	private static final int MAX_N = 3;
 	
 	public Ngrams ngramsTfIdf;
 
@@ -41,6 +42,45 @@ public class TextWithNgrams extends Text{
 	@Override
 	public double similarity(Object o){
 		TextWithNgrams other = (TextWithNgrams)o;
-		return ngramsTfIdf.similarity(other.ngramsTfIdf, 1,1); //TODO only unigrams
+		return similarity(other, NgramWeights.UNIGRAMS); //TODO only unigrams
+	}
+	
+	/**
+	 * @return the weighted sum of the cosine similarities of each n (and skip-gram n, if both
+	 * texts have skip-grams). Each is computed on the sparse vectors that Ngrams keeps.
+	 */
+	public double similarity(TextWithNgrams other, NgramWeights weights){
+		double sum = 0;
+		for(int n = 1; n <= MAX_N; n++){
+			if(weights.ngram(n) != 0){
+				sum += weights.ngram(n) * ngramsTfIdf.similarity(other.ngramsTfIdf, n);
+			}
+		}
+		Ngrams skipgrams = skipgrams();
+		Ngrams otherSkipgrams = other.skipgrams();
+		if(skipgrams != null && otherSkipgrams != null){
+			for(int n = 2; n <= MAX_N; n++){
+				if(weights.skipgram(n) != 0){
+					sum += weights.skipgram(n) * skipgrams.similarity(otherSkipgrams, n);
+				}
+			}
+		}
+		return sum;
+	}
+	
+	/**
+	 * @return null, since there are none
+	 */
+	protected Ngrams skipgrams(){
+		return null;
+	}
+	
+	/**
+	 * Cosine similarities are summed in key order (see SparseVector.dot()), whichever text 
+	 * they're computed from.
+	 */
+	@Override
+	public boolean symmetricSimilarity(){
+		return true;
 	}
 }
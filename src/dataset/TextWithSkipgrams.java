@@ -40,9 +40,12 @@ public class TextWithSkipgrams extends TextWithNgrams{
 	@Override
 	public double similarity(Object o){
 		TextWithSkipgrams other = (TextWithSkipgrams)o;
-		double ngramSimiliarity = ngramsTfIdf.similarity(other.ngramsTfIdf, 1,1);
-		double skipgramSimilarity = skipgramsTfIdf.similarity(other.skipgramsTfIdf, 2,2);
-		return ngramSimiliarity + skipgramSimilarity; //TODO unigrams + skip-bigrams
+		return similarity(other, NgramWeights.UNIGRAMS_AND_SKIP_BIGRAMS); //TODO unigrams + skip-bigrams
+	}
+	
+	@Override
+	protected Ngrams skipgrams(){
+		return skipgramsTfIdf;
 	}
 	
 	public String toString(){
@@ -194,6 +194,14 @@ public class TextWithSynsets extends TextWithNgrams{
 //		return weightedSynset + weightedNgram;
 	}
 	
+	/**
+	 * The synset scores are summed in the order of this text's concepts
+	 */
+	@Override
+	public boolean symmetricSimilarity(){
+		return false;
+	}
+	
 	private static class SynsetSimilarity{
 		HashMap<MyConcept, TObjectDoubleHashMap<MyConcept>> cached = new HashMap<MyConcept, TObjectDoubleHashMap<MyConcept>>();
 
@@ -1,7 +1,7 @@
 package dataset;
 
 import gnu.trove.iterator.TIntIterator;
-import gnu.trove.map.hash.TObjectDoubleHashMap;
+import gnu.trove.map.hash.TLongDoubleHashMap;
 import gnu.trove.set.hash.TIntHashSet;
 
 import java.util.ArrayList;
@@ -11,6 +11,7 @@ import org.jsoup.nodes.Element;
 
 import semanticSim.WikiConcept;
 import util.CosineSimilarity;
+import util.SparseVector;
 
 /**
  * Represents a piece of text as well as a set of Wikipedia-concepts,
@@ -22,19 +23,20 @@ public class TextWithWiki extends TextWithNgrams{
 	
 	protected static final String XML_TEXT_CLASS = "text-with-concepts";
 	
-	public final TObjectDoubleHashMap<Integer> conceptMap;
+	public final SparseVector conceptMap; //counts by Wikipedia article index
 
 	public TextWithWiki(String raw, List<String> rawWords, List<String> lemmatizedWords, 
 			Ngrams ngrams, List<WikiConcept> concepts) {
 		super(raw, rawWords, lemmatizedWords, ngrams);
-		conceptMap = new TObjectDoubleHashMap<Integer>();
+		TLongDoubleHashMap conceptCounts = new TLongDoubleHashMap();
 		for(WikiConcept c : concepts){
 			TIntIterator it = c.indices.iterator();
 			while(it.hasNext()){
 				int index = it.next();
-				conceptMap.adjustOrPutValue(index, 1, 1);
+				conceptCounts.adjustOrPutValue(index, 1, 1);
 			}
 		}
+		conceptMap = SparseVector.of(conceptCounts);
 	}
 	
 //	@Override
@@ -0,0 +1,115 @@
+package dataset;
+
+/**
+ * Keeps the k best (row, similarity) pairs offered to it, in a min-heap whose root is the 
+ * worst of them. Of two equal similarities, the lower row is the better one.
+ * @author jonathan
+ *
+ */
+class TopSimilarities {
+	
+	private final int k;
+	private final int[] rows;
+	private final double[] similarities;
+	private int size;
+	
+	TopSimilarities(int k){
+		if(k < 0){
+			throw new IllegalArgumentException("k: " + k);
+		}
+		this.k = k;
+		rows = new int[k];
+		similarities = new double[k];
+	}
+	
+	/**
+	 * @return whether the pair is among the k best so far
+	 */
+	boolean offer(int row, double similarity){
+		if(size < k){
+			rows[size] = row;
+			similarities[size] = similarity;
+			siftUp(size++);
+			return true;
+		}
+		if(k == 0 || !better(row, similarity, 0)){
+			return false;
+		}
+		rows[0] = row;
+		similarities[0] = similarity;
+		siftDown(0);
+		return true;
+	}
+	
+	boolean isFull(){
+		return size == k;
+	}
+	
+	/**
+	 * @return the similarity a new pair must beat, once k pairs have been offered
+	 */
+	double threshold(){
+		return isFull() && k > 0 ? similarities[0] : 0;
+	}
+	
+	/**
+	 * @return the rows, best first
+	 */
+	int[] rows(){
+		int[] heapRows = rows.clone();
+		double[] heapSimilarities = similarities.clone();
+		int heapSize = size;
+		int[] best = new int[heapSize];
+		while(size > 0){
+			best[size - 1] = rows[0];
+			size--;
+			rows[0] = rows[size];
+			similarities[0] = similarities[size];
+			siftDown(0);
+		}
+		System.arraycopy(heapRows, 0, rows, 0, heapSize);
+		System.arraycopy(heapSimilarities, 0, similarities, 0, heapSize);
+		size = heapSize;
+		return best;
+	}
+	
+	private boolean better(int row, double similarity, int i){
+		return similarity > similarities[i] || (similarity == similarities[i] && row < rows[i]);
+	}
+	
+	private void siftUp(int i){
+		while(i > 0){
+			int parent = (i - 1) / 2;
+			if(!better(rows[parent], similarities[parent], i)){
+				return;
+			}
+			swap(i, parent);
+			i = parent;
+		}
+	}
+	
+	private void siftDown(int i){
+		while(true){
+			int worst = i;
+			for(int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++){
+				if(!better(rows[child], similarities[child], worst)){
+					worst = child;
+				}
+			}
+			if(worst == i){
+				return;
+			}
+			swap(i, worst);
+			i = worst;
+		}
+	}
+	
+	private void swap(int i, int j){
+		int row = rows[i];
+		rows[i] = rows[j];
+		rows[j] = row;
+		double similarity = similarities[i];
+		similarities[i] = similarities[j];
+		similarities[j] = similarity;
+	}
+}
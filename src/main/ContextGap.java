@@ -9,7 +9,8 @@ import java.util.List;
 import util.Environment;
 import dataset.CitingPaper;
 import dataset.Dataset;
-import dataset.DatasetXml;
+import dataset.DatasetBinary;
+import dataset.DatasetLoader;
 import dataset.SentenceType;
 import dataset.Text;
 
@@ -28,32 +29,35 @@ public class ContextGap {
 		String resourcesDir = Environment.resources();
 		File XML_DIR = new File(resourcesDir, "xml-datasets");
 		TIntIntHashMap gaps = new TIntIntHashMap();
-		for(String label : labels){
-			final int MAX_CITERS = 0;
-			Dataset<Text> dataset = DatasetXml.parseXmlFile(
-					Text.class,
-					new File(XML_DIR, label + ".xml"), 
-					MAX_CITERS);
-			for(CitingPaper<Text> citer : dataset.citers){
-				for(int i = 0; i < citer.sentences.size(); i++){
-					if(citer.sentences.get(i).type != SentenceType.IMPLICIT_REFERENCE){
-						continue;
-					}
-					int minDist = Integer.MAX_VALUE;
-					for(int dist = 1; dist < citer.sentences.size(); dist++){
-						if(i - dist >= 0 && citer.sentences.get(i-dist).type != SentenceType.NOT_REFERENCE){
-							minDist = dist;
-							break;
+		final int MAX_CITERS = 0;
+		final int PREFETCH = 2; //counting is quicker than parsing
+		final int LOADER_THREADS = Runtime.getRuntime().availableProcessors();
+		try(DatasetLoader<Text> loader = new DatasetLoader<Text>(label -> DatasetBinary.load(
+				Text.class,
+				new File(XML_DIR, label + ".xml"), 
+				MAX_CITERS), LOADER_THREADS)){
+			for(Dataset<Text> dataset : loader.prefetching(labels, PREFETCH)){
+				for(CitingPaper<Text> citer : dataset.citers){
+					for(int i = 0; i < citer.sentences.size(); i++){
+						if(citer.sentences.get(i).type != SentenceType.IMPLICIT_REFERENCE){
+							continue;
 						}
-						if(i + dist < citer.sentences.size() && citer.sentences.get(i+dist).type != SentenceType.NOT_REFERENCE){
-							minDist = dist;
-							break;
+						int minDist = Integer.MAX_VALUE;
+						for(int dist = 1; dist < citer.sentences.size(); dist++){
+							if(i - dist >= 0 && citer.sentences.get(i-dist).type != SentenceType.NOT_REFERENCE){
+								minDist = dist;
+								break;
+							}
+							if(i + dist < citer.sentences.size() && citer.sentences.get(i+dist).type != SentenceType.NOT_REFERENCE){
+								minDist = dist;
+								break;
+							}
+						}
+						if(minDist == Integer.MAX_VALUE){
+							gaps.adjustOrPutValue(0, 1, 1); //There was only 1 citation in citer. Set gap to 0
+						}else{
+							gaps.adjustOrPutValue(minDist-1, 1, 1); //gap is minDist - 1
 						}
-					}
-					if(minDist == Integer.MAX_VALUE){
-						gaps.adjustOrPutValue(0, 1, 1); //There was only 1 citation in citer. Set gap to 0
-					}else{
-						gaps.adjustOrPutValue(minDist-1, 1, 1); //gap is minDist - 1
 					}
 				}
 			}
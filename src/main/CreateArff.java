@@ -2,6 +2,7 @@ package main;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 
 import mrf.MRF_params;
@@ -11,8 +12,11 @@ import util.Printer;
 import weka.InstanceHandler;
 import weka.SentenceInstance;
 import dataset.Dataset;
-import dataset.DatasetXml;
+import dataset.DatasetBinary;
+import dataset.DatasetLoader;
+import dataset.SentenceIndex;
 import dataset.SentenceKey;
+import dataset.SimilarityProvider;
 import dataset.Text;
 import dataset.TextWithNgrams;
 import dataset.TextWithSspace;
@@ -53,28 +57,32 @@ public class CreateArff {
 		final boolean onlyText = false; //TODO
 		
 		MRF_classifier<TextWithNgrams> mrfClassifier = 
-				new MRF_classifier<TextWithNgrams>(new MRF_params(4, 0.5, 100));
+				new MRF_classifier<TextWithNgrams>(new MRF_params(4, 0.5, 100), SentenceIndex::new);
 		
-		for(int i = 0; i < labels.length; i++){
-			String label = labels[i];
-			final int MAX_CITERS = 0; //0 means unlimited
-			Dataset<TextWithNgrams> dataset = DatasetXml.parseXmlFile(
-					TextWithNgrams.class,
+		final int MAX_CITERS = 0; //0 means unlimited
+		final int PREFETCH = 1; //the next dataset is loaded while this one is classified
+		final int LOADER_THREADS = Runtime.getRuntime().availableProcessors();
+		try(DatasetLoader<TextWithNgrams> loader = new DatasetLoader<TextWithNgrams>(label -> DatasetBinary.load(
+				TextWithNgrams.class,
 				new File(resourcesDir, "xml-datasets/" + label + "-with-ngrams.xml"), 
-				MAX_CITERS);
-			Printer.printBigProgressHeader(i, labels.length);
-			System.out.println(dataset.datasetLabel);
-			System.out.println("(" + dataset.citedMainAuthor + ")");
-			
-			HashMap<SentenceKey<TextWithNgrams>, Double> mrfProbabilities =  mrfClassifier.classify(dataset).classificationProbabilities();
-			
-			ArrayList<SentenceInstance> balancedInstances =  InstanceHandler.createInstances(dataset, onlyText, true, mrfProbabilities);
-			InstanceHandler.writeToArffFile(balancedInstances, new File(Environment.resources(), 
-					"arff/" + dataset.datasetLabel + outAfterLabel + ".arff"));	
-			
-			ArrayList<SentenceInstance> fullInstances =  InstanceHandler.createInstances(dataset, onlyText, false, mrfProbabilities);
-			InstanceHandler.writeToArffFile(fullInstances, new File(Environment.resources(), 
-					"arff/" + dataset.datasetLabel + outAfterLabel + "-full.arff"));	
+				MAX_CITERS), LOADER_THREADS)){
+			int i = 0;
+			for(Dataset<TextWithNgrams> dataset : loader.prefetching(Arrays.asList(labels), PREFETCH)){
+				Printer.printBigProgressHeader(i++, labels.length);
+				System.out.println(dataset.datasetLabel);
+				System.out.println("(" + dataset.citedMainAuthor + ")");
+				
+				HashMap<SentenceKey<TextWithNgrams>, Double> mrfProbabilities =  mrfClassifier.classify(dataset).classificationProbabilities();
+				SimilarityProvider<TextWithNgrams> similarities = mrfClassifier.similarities(dataset);
+				
+				ArrayList<SentenceInstance> balancedInstances =  InstanceHandler.createInstances(dataset, onlyText, true, mrfProbabilities, similarities);
+				InstanceHandler.writeToArffFile(balancedInstances, new File(Environment.resources(), 
+						"arff/" + dataset.datasetLabel + outAfterLabel + ".arff"));	
+				
+				ArrayList<SentenceInstance> fullInstances =  InstanceHandler.createInstances(dataset, onlyText, false, mrfProbabilities, similarities);
+				InstanceHandler.writeToArffFile(fullInstances, new File(Environment.resources(), 
+						"arff/" + dataset.datasetLabel + outAfterLabel + "-full.arff"));	
+			}
 		}
 	}
 }
@@ -0,0 +1,46 @@
+package main;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import util.Environment;
+import util.Printer;
+import dataset.DatasetBinary;
+import dataset.Text;
+import dataset.TextWithNgrams;
+
+/**
+ * Converts XML-datasets to binary datasets (see DatasetBinary), which are written next to them. 
+ * MRF and CreateArff read those instead of the XML when they are up to date.
+ * @author jonathan
+ *
+ */
+public class CreateBinaryDatasets {
+	
+	public static void main(String[] args) throws ClassNotFoundException {
+		Class<? extends Text> textClass = TextWithNgrams.class;
+		String afterLabelInFileName = "with-ngrams";
+		
+		if(args.length == 2){
+			textClass = Class.forName(args[0]).asSubclass(Text.class);
+			afterLabelInFileName = args[1];
+		}else if(args.length != 0){
+			System.out.println("Usage:");
+			System.out.println("0 args or");
+			System.out.println("2 args: 'text_class' 'class_label'");
+			return;
+		}
+		
+		Printer.printBigHeader("Create binary datasets (" + textClass + ")");
+		List<String> labels = Arrays.asList(new String[]{
+				"D07-1031", "J96-2004", "N06-1020", "P04-1015", "P05-1045", "W02-1011", "W06-1615",
+				"A92-1018", "J90-1003", "N03-1003", "P04-1035", "P07-1033", "W04-1013", "C98-2122", 
+				"J93-1007", "N04-1035", "P02-1053", "P04-1041", "P90-1034", "W05-0909"});
+		File xmlDir = new File(Environment.resources(), "xml-datasets");
+		for(String label : labels){
+			File xmlFile = new File(xmlDir, label + "-" + afterLabelInFileName + ".xml");
+			DatasetBinary.convert(textClass, xmlFile, DatasetBinary.binaryFile(xmlFile));
+		}
+	}
+}
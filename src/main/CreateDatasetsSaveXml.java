@@ -95,7 +95,7 @@ public class CreateDatasetsSaveXml {
 	
 	private static void withNgrams(){
 		File resourcesDir = new File(Environment.resources());
-		NgramIdf ngramIdf = NgramIdf.fromXmlFile(new File(resourcesDir, "xml-datasets/ngram-frequencies.xml"), NgramIdf.DEFAULT_NGRAM_MIN_COUNT);
+		NgramIdf ngramIdf = NgramIdf.fromFile(new File(resourcesDir, "xml-datasets/ngram-frequencies.xml"), NgramIdf.DEFAULT_NGRAM_MIN_COUNT);
 		ArrayList<Dataset<TextWithNgrams>> datasets = DatasetFactory.fromHtmlDir(
 				DatasetParams.enhanced(TextParams.withNgrams(ngramIdf), BOUNDARY, NUM_HOOKS, NUM_ACRONYMS), 
 				HTML_DIR);
@@ -106,7 +106,7 @@ public class CreateDatasetsSaveXml {
 	
 	private static void withSspace(){
 		File resourcesDir = new File(Environment.resources());
-		NgramIdf ngramIdf = NgramIdf.fromXmlFile(new File(resourcesDir, "xml-datasets/ngram-frequencies.xml"), NgramIdf.DEFAULT_NGRAM_MIN_COUNT);
+		NgramIdf ngramIdf = NgramIdf.fromFile(new File(resourcesDir, "xml-datasets/ngram-frequencies.xml"), NgramIdf.DEFAULT_NGRAM_MIN_COUNT);
 		SSpaceWrapper sspace = SSpaceWrapper.load(new File(resourcesDir, "sspace/space-lsa-500.sspace"), new File(resourcesDir, "sspace/wordfrequencies.ser"));
 		ArrayList<Dataset<TextWithSspace>> datasets = DatasetFactory.fromHtmlDir(
 				DatasetParams.enhanced(TextParams.withSSpace(ngramIdf, sspace), BOUNDARY, NUM_HOOKS, NUM_ACRONYMS), 
@@ -118,7 +118,7 @@ public class CreateDatasetsSaveXml {
 	
 	private static void withSynsets(int numDatasets){
 		File resourcesDir = new File(Environment.resources());
-		NgramIdf ngramIdf = NgramIdf.fromXmlFile(new File(resourcesDir, "xml-datasets/ngram-frequencies.xml"), NgramIdf.DEFAULT_NGRAM_MIN_COUNT);
+		NgramIdf ngramIdf = NgramIdf.fromFile(new File(resourcesDir, "xml-datasets/ngram-frequencies.xml"), NgramIdf.DEFAULT_NGRAM_MIN_COUNT);
 		StanfordCoreNLP pipeline = SynsetExtractor.createPipeline();
 		String dictDir = new File(Environment.resources(), "wordnet-dict").toString();
 		IDictionary dict = SynsetExtractor.dictFromDir(dictDir);
@@ -139,8 +139,8 @@ public class CreateDatasetsSaveXml {
 	
 	private static void withSkipgrams(){
 		File resourcesDir = new File(Environment.resources());
-		NgramIdf ngramIdf = NgramIdf.fromXmlFile(new File(resourcesDir, "xml-datasets/ngram-frequencies.xml"), NgramIdf.DEFAULT_NGRAM_MIN_COUNT);
-		NgramIdf skipgramIdf = NgramIdf.fromXmlFile(new File(resourcesDir, "xml-datasets/skipgram-frequencies.xml"), NgramIdf.DEFAULT_SKIPGRAM_MIN_COUNT);
+		NgramIdf ngramIdf = NgramIdf.fromFile(new File(resourcesDir, "xml-datasets/ngram-frequencies.xml"), NgramIdf.DEFAULT_NGRAM_MIN_COUNT);
+		NgramIdf skipgramIdf = NgramIdf.fromFile(new File(resourcesDir, "xml-datasets/skipgram-frequencies.xml"), NgramIdf.DEFAULT_SKIPGRAM_MIN_COUNT);
 		ArrayList<Dataset<TextWithSkipgrams>> datasets = new ArrayList<Dataset<TextWithSkipgrams>>();
 		for(int i = 0; i < LABELS.length; i++){
 			String label = LABELS[i];
@@ -163,7 +163,7 @@ public class CreateDatasetsSaveXml {
 		File serDir = new File(resourcesDir, "ser");
 		ArrayList<Dataset<TextWithWiki>> datasets = new ArrayList<Dataset<TextWithWiki>>();
 		WikiGraph wikiGraph = WikiGraphFactory.loadWikiGraph(new File(serDir, "linksSingleWords.ser"), new File(serDir, "toIndexSingleWords.ser"), false);
-		NgramIdf ngramIdf = NgramIdf.fromXmlFile(new File(resourcesDir, "xml-datasets/ngram-frequencies.xml"), NgramIdf.DEFAULT_NGRAM_MIN_COUNT);
+		NgramIdf ngramIdf = NgramIdf.fromFile(new File(resourcesDir, "xml-datasets/ngram-frequencies.xml"), NgramIdf.DEFAULT_NGRAM_MIN_COUNT);
 		for(int i = 0; i < LABELS.length; i++){
 			String label = LABELS[i];
 			Printer.printBigProgressHeader(i, LABELS.length);
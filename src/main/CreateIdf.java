@@ -1,17 +1,28 @@
 package main;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import util.Environment;
 import util.Printer;
 import dataset.Dataset;
-import dataset.DatasetXml;
+import dataset.DatasetBinary;
+import dataset.DatasetLoader;
 import dataset.NgramIdf;
 import dataset.Text;
+import dataset.TextUtil;
 
 /**
- * Compute idf (inverse document frequency) values for the dataset and write
- * them to XML-files.
+ * Compute idf (inverse document frequency) values for the dataset, or for a lemmatized
+ * corpus, and write them to XML-files and to binary files (see NgramIdf.writeBinary()).
+ * The documents are counted in parallel.
  * @author jonathan
  *
  */
@@ -23,18 +34,58 @@ public class CreateIdf {
 			"J93-1007", "N04-1035", "P02-1053", "P04-1041", "P90-1034", "W05-0909"};
 	
 	public static void main(String[] args) {
+		Supplier<Stream<List<String>>> documents;
+		if(args.length == 1){
+			File lemmaDir = new File(Environment.resources() + "/corpus/" + args[0]);
+			documents = () -> corpusDocuments(lemmaDir);
+		}else if(args.length == 0){
+			List<Dataset<Text>> datasets = loadDatasets();
+			documents = () -> datasets.stream().flatMap(NgramIdf::documents);
+		}else{
+			System.out.println("Usage:");
+			System.out.println("0 args (the datasets) or");
+			System.out.println("1 arg: 'lemma_dir' (a lemmatized corpus, see LemmatizeCorpus)");
+			return;
+		}
+		
 		Printer.printBigHeader("Create IDF-file");
-		NgramIdf ngramIdf = new NgramIdf();
-		NgramIdf skipgramIdf = new NgramIdf();
-		for(int i = 0; i < LABELS.length; i++){
-			String label = LABELS[i];
-			Printer.printBigProgressHeader(i, LABELS.length);
-			File datasetXmlFile = new File(Environment.resources(), "xml-datasets/" + label + "-with-ngrams.xml");
-			Dataset<Text> dataset = DatasetXml.parseXmlFile(Text.class, datasetXmlFile, 0);
-			ngramIdf.parseDataset(dataset, NgramIdf.Type.NGRAM);
-			skipgramIdf.parseDataset(dataset, NgramIdf.Type.SKIPGRAM);
+		System.out.print("Counting n-grams ... ");
+		NgramIdf ngramIdf = NgramIdf.fromDocuments(documents.get(), NgramIdf.Type.NGRAM)
+				.prune(NgramIdf.DEFAULT_NGRAM_MIN_COUNT);
+		System.out.println("[x]");
+		System.out.print("Counting skip-grams ... ");
+		NgramIdf skipgramIdf = NgramIdf.fromDocumentsTwoPass(documents, NgramIdf.Type.SKIPGRAM, 
+				NgramIdf.DEFAULT_SKIPGRAM_MIN_COUNT); //Most skip-grams are rare, so don't count them all
+		System.out.println("[x]");
+		File ngramFile = new File(Environment.resources(), "xml-datasets/ngram-frequencies.xml");
+		File skipgramFile = new File(Environment.resources(), "xml-datasets/skipgram-frequencies.xml");
+		ngramIdf.writeXml(ngramFile, NgramIdf.DEFAULT_NGRAM_MIN_COUNT);
+		ngramIdf.writeBinary(NgramIdf.binaryFile(ngramFile), NgramIdf.DEFAULT_NGRAM_MIN_COUNT);
+		skipgramIdf.writeXml(skipgramFile, NgramIdf.DEFAULT_SKIPGRAM_MIN_COUNT);
+		skipgramIdf.writeBinary(NgramIdf.binaryFile(skipgramFile), NgramIdf.DEFAULT_SKIPGRAM_MIN_COUNT);
+	}
+	
+	private static List<Dataset<Text>> loadDatasets(){
+		try(DatasetLoader<Text> loader = new DatasetLoader<Text>(label -> DatasetBinary.load(Text.class, 
+				new File(Environment.resources(), "xml-datasets/" + label + "-with-ngrams.xml"), 0), 
+				Runtime.getRuntime().availableProcessors())){
+			return loader.loadAll(Arrays.asList(LABELS));
 		}
-		ngramIdf.writeXml(new File(Environment.resources(), "xml-datasets/ngram-frequencies.xml"), NgramIdf.DEFAULT_NGRAM_MIN_COUNT);
-		skipgramIdf.writeXml(new File(Environment.resources(), "xml-datasets/skipgram-frequencies.xml"), NgramIdf.DEFAULT_SKIPGRAM_MIN_COUNT);
+	}
+	
+	/**
+	 * Every file is one document, of space separated lemmas.
+	 */
+	private static Stream<List<String>> corpusDocuments(File lemmaDir){
+		return Arrays.stream(lemmaDir.listFiles()).map(file -> {
+			try {
+				String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+				return TextUtil.split(text).collect(Collectors.toList());
+			} catch (IOException e) {
+				e.printStackTrace();
+				System.exit(0);
+				return null;
+			}
+		});
 	}
 }
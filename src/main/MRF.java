@@ -4,14 +4,22 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
 
+import mrf.MRF_beliefs;
 import mrf.MRF_classifier;
 import mrf.MRF_params;
 import util.Environment;
 import util.Printer;
+import weka.classifiers.evaluation.ThresholdCurve;
+import weka.core.Instances;
 import dataset.Dataset;
-import dataset.DatasetXml;
+import dataset.DatasetBinary;
+import dataset.DatasetLoader;
 import dataset.ResultImpl;
+import dataset.SimilarityCache;
+import dataset.SimilarityProvider;
 import dataset.Text;
 import dataset.TextWithWiki;
 
@@ -21,6 +29,8 @@ import dataset.TextWithWiki;
  *
  */
 public class MRF {
+	
+	private static final int SIMILARITY_CACHE_CAPACITY = 1 << 19; //pairs
 
 	public static void main(String[] args) throws ClassNotFoundException {
 		Class textClass = TextWithWiki.class;
@@ -56,26 +66,18 @@ public class MRF {
 	
 	private static <T extends Text> void testMRF(Class<T> textClass, String afterLabelInFileName, List<String> labels){
 		String resourcesDir = Environment.resources();
-		List<Dataset<T>> datasets = new ArrayList<Dataset<T>>();
+		List<Dataset<T>> datasets;
 //		labels = labels.subList(0, 1); //TODO
 		
 //		File XML_DIR = new File(resourcesDir, "my-xml-datasets");
 		File XML_DIR = new File(resourcesDir, "xml-datasets");
 		
 		
-		for(String label : labels){
-			final int MAX_CITERS = 0;
-			Dataset<T> dataset = DatasetXml.parseXmlFile(
-					textClass,
-					new File(XML_DIR, label + "-" + afterLabelInFileName + ".xml"), 
-					MAX_CITERS);
-//			dataset.findExtra(80, 2, 2);
-//			System.out.println(dataset.datasetLabel);
-//			System.out.println("(" + dataset.citedMainAuthor + ")");
-//			System.out.println(dataset.getAcronyms());
-//			System.out.println(dataset.getLexicalHooks()); //TODO
-//			System.out.println();
-			datasets.add(dataset);
+		final int MAX_CITERS = 0;
+		try(DatasetLoader<T> loader = new DatasetLoader<T>(label -> DatasetBinary.load(textClass, 
+				new File(XML_DIR, label + "-" + afterLabelInFileName + ".xml"), MAX_CITERS), 
+				Runtime.getRuntime().availableProcessors())){
+			datasets = loader.loadAll(labels);
 		}
 		
 		final int neighbourhood = 4;
@@ -83,15 +85,22 @@ public class MRF {
 		final int maxRuns = 100;
 		MRF_params params = new MRF_params(neighbourhood, beliefThreshold, maxRuns);
 		
-		List<ArrayList<ResultImpl<T>>> thresholdResults = new ArrayList<ArrayList<ResultImpl<T>>>();
+		ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		SimilarityCache similarityCache = new SimilarityCache(SIMILARITY_CACHE_CAPACITY);
+		Function<Dataset<T>, SimilarityProvider<T>> similarities = dataset -> SimilarityProvider.cached(dataset, similarityCache);
+		List<MRF_beliefs<T>> beliefs = new MRF_classifier<T>(params, similarities).beliefs(datasets, pool);
 		for(double threshold = 0.1; threshold <= 0.9; threshold += 0.1){
-			params = new MRF_params(neighbourhood, threshold, maxRuns);
-			ArrayList<ResultImpl<T>> results = new MRF_classifier<T>(params).classify(datasets);
-			thresholdResults.add(results);
-		}
-		for(List<ResultImpl<T>> results : thresholdResults){
+			List<ResultImpl<T>> results = new ArrayList<ResultImpl<T>>();
+			for(MRF_beliefs<T> datasetBeliefs : beliefs){
+				results.add(datasetBeliefs.result(threshold));
+			}
 			Printer.printMultipleResults("MRF-wiki", results, datasets, false);
 		}
+		Instances curve = MRF_beliefs.curve(beliefs);
+		System.out.println("Area under ROC: " + ThresholdCurve.getROCArea(curve));
+		System.out.println("Area under PR: " + ThresholdCurve.getPRCArea(curve));
+		
+		System.out.println(similarityCache);
 		
 		//TODO
 //		ResultImpl mergedResults = ResultImpl.mergeMany(results);
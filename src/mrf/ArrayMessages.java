@@ -0,0 +1,399 @@
+package mrf;
+
+import java.util.List;
+
+/**
+ * The messages passed between the sentences of one citer, stored in flat primitive arrays
+ * instead of one HashMap per sentence. The message that sentence 'from' has sent to sentence 'to'
+ * is found at index [to * width + (from - to + neighbourhood)]. Compatibilities are computed once
+ * and nothing is allocated during a sweep.
+ *
+ * Messages are multiplied in the same order as the HashMap-version iterates over its keys, so that
+ * both versions give bit-for-bit identical results. With leave-one-out products the product of all
+ * messages but one is instead taken from prefix and suffix products, so that a sentence sends all its
+ * messages in O(k) instead of O(k^2). Zero messages are handled, but the results can differ from the
+ * HashMap-version in the last bits.
+ * @author jonathan
+ *
+ */
+class ArrayMessages {
+	
+	private static final int NO = 0;
+	private static final int YES = 1;
+	
+	private final int numSentences;
+	private final int neighbourhood;
+	private final int width;
+	private final boolean leaveOneOut;
+	
+	private final double[] selfNo;
+	private final double[] selfYes;
+	private final double[] receivedNo;
+	private final double[] receivedYes;
+	private final double[] probSame; //compatibility(YES, from, to)[YES], at index of message from -> to
+	
+	private final int[] productOrder; //offsets of received messages, in the order they are multiplied
+	private final int[] numReceived;
+	
+	//Only used with leave-one-out products. prefix[i] is the product of the first i received messages
+	private final double[] prefixNo;
+	private final double[] prefixYes;
+	private final double[] suffixNo;
+	private final double[] suffixYes;
+	private final int[] position; //position in the product order, per offset
+	
+	//The message computed by computeMessage()
+	double nextNo;
+	double nextYes;
+	
+	long messageUpdates;
+	double maxResidual; //the largest change of a message in the last sweep
+	
+	/**
+	 * @param probSame compatibilities, as computed by compatibilities(). Only read, so it can be shared
+	 * between citers that have the same sentences.
+	 */
+	ArrayMessages(int numSentences, int neighbourhood, List<double[]> selfBeliefs, double[] probSame, 
+			boolean leaveOneOut){
+		this.numSentences = numSentences;
+		this.neighbourhood = neighbourhood;
+		this.leaveOneOut = leaveOneOut;
+		width = 2 * neighbourhood + 1;
+		selfNo = new double[numSentences];
+		selfYes = new double[numSentences];
+		receivedNo = new double[numSentences * width];
+		receivedYes = new double[numSentences * width];
+		this.probSame = probSame;
+		productOrder = new int[numSentences * width];
+		numReceived = new int[numSentences];
+		prefixNo = new double[width + 1];
+		prefixYes = new double[width + 1];
+		suffixNo = new double[width + 1];
+		suffixYes = new double[width + 1];
+		position = new int[width];
+		
+		for(int s = 0; s < numSentences; s++){
+			selfNo[s] = selfBeliefs.get(s)[NO];
+			selfYes[s] = selfBeliefs.get(s)[YES];
+			for(int m = leftmostNeighbour(s); m <= rightmostNeighbour(s); m++){
+				if(m != s){
+					receivedNo[index(s, m)] = 0.5; //start value for msg
+					receivedYes[index(s, m)] = 0.5;
+				}
+			}
+			setupProductOrder(s);
+		}
+	}
+	
+	static double[] compatibilities(int numSentences, int neighbourhood, Compatibility compatibility){
+		int width = 2 * neighbourhood + 1;
+		double[] probSame = new double[numSentences * width];
+		for(int s = 0; s < numSentences; s++){
+			for(int m = Math.max(0, s - neighbourhood); m <= Math.min(numSentences - 1, s + neighbourhood); m++){
+				if(m != s){
+					probSame[s * width + m - s + neighbourhood] = compatibility.probSame(m, s);
+				}
+			}
+		}
+		return probSame;
+	}
+	
+	/**
+	 * Lets every sentence send a message to each of its neighbours, in the same order as
+	 * MRF_classifier does with HashMaps.
+	 * @return whether any message changed more than delta
+	 */
+	boolean sweep(double delta){
+		maxResidual = 0;
+		boolean anyChange = false;
+		for(int from = 0; from < numSentences; from++){
+			prepareSender(from);
+			int rightmost = rightmostNeighbour(from);
+			for(int to = leftmostNeighbour(from); to <= rightmost; to++){
+				if(to != from){
+					boolean msgChanged = sendMessage(from, to, delta);
+					if(msgChanged){
+						anyChange = true;
+					}
+				}
+			}
+		}
+		return anyChange;
+	}
+	
+	/**
+	 * Like sweep(), but only the sentences marked as active send messages. A sentence becomes
+	 * active when one of the messages it receives changes more than delta, and inactive when
+	 * it has sent its messages.
+	 * @return whether any sentence is still active
+	 */
+	boolean sweepActive(double delta, boolean[] active){
+		maxResidual = 0;
+		boolean anyActive = false;
+		for(int from = 0; from < numSentences; from++){
+			if(!active[from]){
+				continue;
+			}
+			active[from] = false;
+			prepareSender(from);
+			int rightmost = rightmostNeighbour(from);
+			for(int to = leftmostNeighbour(from); to <= rightmost; to++){
+				if(to != from){
+					boolean msgChanged = sendMessage(from, to, delta);
+					if(msgChanged){
+						active[to] = true;
+						if(to < from){ //Later sentences are handled in this sweep
+							anyActive = true;
+						}
+					}
+				}
+			}
+		}
+		return anyActive;
+	}
+	
+	/**
+	 * Starts from the messages of a citer that has since had sentences appended to it.
+	 * Messages to or from the new sentences keep their start value.
+	 */
+	void warmStart(ArrayMessages previous){
+		for(int s = 0; s < previous.numSentences; s++){
+			for(int m = leftmostNeighbour(s); m <= previous.rightmostNeighbour(s); m++){
+				if(m != s){
+					receivedNo[index(s, m)] = previous.receivedNo[index(s, m)];
+					receivedYes[index(s, m)] = previous.receivedYes[index(s, m)];
+				}
+			}
+		}
+	}
+	
+	/**
+	 * The largest change in a self belief or compatibility, compared to the previous messages of the
+	 * same citer, before sentences were appended.
+	 */
+	double potentialDrift(ArrayMessages previous){
+		double drift = 0;
+		for(int s = 0; s < previous.numSentences; s++){
+			drift = Math.max(drift, Math.abs(selfYes[s] - previous.selfYes[s]));
+			for(int m = leftmostNeighbour(s); m <= previous.rightmostNeighbour(s); m++){
+				if(m != s){
+					drift = Math.max(drift, Math.abs(probSame[index(s, m)] - previous.probSame[index(s, m)]));
+				}
+			}
+		}
+		return drift;
+	}
+	
+	private boolean sendMessage(int from, int to, double delta){
+		computeMessage(from, to);
+		int msgIndex = index(to, from);
+		boolean msgChanged = Math.abs(receivedNo[msgIndex] - nextNo) > delta
+				|| Math.abs(receivedYes[msgIndex] - nextYes) > delta;
+		maxResidual = Math.max(maxResidual, residual(from, to));
+		receivedNo[msgIndex] = nextNo;
+		receivedYes[msgIndex] = nextYes;
+		messageUpdates ++;
+		return msgChanged;
+	}
+	
+	/**
+	 * Must be called before computing the messages from a sentence, and again
+	 * whenever it has received new messages.
+	 */
+	void prepareSender(int from){
+		if(leaveOneOut){
+			setupPartialProducts(from);
+		}
+	}
+	
+	/**
+	 * Computes the message from -> to, from the messages that 'from' has received,
+	 * and stores it in nextNo and nextYes.
+	 */
+	void computeMessage(int from, int to){
+		double productNo = 1;
+		double productYes = 1;
+		int except = to - from + neighbourhood;
+		if(leaveOneOut){
+			int i = position[except];
+			productNo = prefixNo[i] * suffixNo[i + 1];
+			productYes = prefixYes[i] * suffixYes[i + 1];
+		}else{
+			int base = from * width;
+			for(int i = 0; i < numReceived[from]; i++){
+				int offset = productOrder[base + i];
+				if(offset != except){
+					productNo *= receivedNo[base + offset];
+					productYes *= receivedYes[base + offset];
+				}
+			}
+		}
+		double beliefNo = selfNo[from] * productNo;
+		double beliefYes = selfYes[from] * productYes;
+		double sum = beliefNo + beliefYes;
+		if(sum != 0){
+			beliefNo /= sum;
+			beliefYes /= sum;
+		}else{
+			beliefNo = 0.5;
+			beliefYes = 0.5;
+		}
+		
+		int msgIndex = index(to, from);
+		double same = probSame[msgIndex];
+		double msgNo = beliefNo * 0.5 + beliefYes * (1 - same);
+		double msgYes = beliefNo * 0.5 + beliefYes * same;
+		sum = msgNo + msgYes;
+		if(sum != 0){
+			msgNo /= sum;
+			msgYes /= sum;
+		}else{
+			msgNo = 0.5;
+			msgYes = 0.5;
+		}
+		nextNo = msgNo;
+		nextYes = msgYes;
+	}
+	
+	/**
+	 * Replaces the message from -> to with the last computed one.
+	 */
+	void commitMessage(int from, int to){
+		int msgIndex = index(to, from);
+		receivedNo[msgIndex] = nextNo;
+		receivedYes[msgIndex] = nextYes;
+		messageUpdates ++;
+	}
+	
+	/**
+	 * How much the last computed message differs from the current message from -> to.
+	 */
+	double residual(int from, int to){
+		int msgIndex = index(to, from);
+		return Math.max(Math.abs(receivedNo[msgIndex] - nextNo), Math.abs(receivedYes[msgIndex] - nextYes));
+	}
+	
+	int numSentences(){
+		return numSentences;
+	}
+	
+	int width(){
+		return width;
+	}
+	
+	/**
+	 * The number of messages that are sent in one sweep
+	 */
+	int numMessages(){
+		int num = 0;
+		for(int s = 0; s < numSentences; s++){
+			num += numReceived[s];
+		}
+		return num;
+	}
+	
+	double[] finalBelief(int sentence){
+		double productNo = 1;
+		double productYes = 1;
+		int base = sentence * width;
+		for(int i = 0; i < numReceived[sentence]; i++){
+			int offset = productOrder[base + i];
+			productNo *= receivedNo[base + offset];
+			productYes *= receivedYes[base + offset];
+		}
+		double[] belief = new double[]{selfNo[sentence] * productNo, selfYes[sentence] * productYes};
+		double sum = belief[NO] + belief[YES];
+		if(sum != 0){
+			belief[NO] /= sum;
+			belief[YES] /= sum;
+		}else{
+			belief[NO] = 0.5;
+			belief[YES] = 0.5;
+		}
+		return belief;
+	}
+	
+	private void setupPartialProducts(int sentence){
+		int base = sentence * width;
+		int n = numReceived[sentence];
+		prefixNo[0] = 1;
+		prefixYes[0] = 1;
+		for(int i = 0; i < n; i++){
+			int offset = productOrder[base + i];
+			position[offset] = i;
+			prefixNo[i + 1] = prefixNo[i] * receivedNo[base + offset];
+			prefixYes[i + 1] = prefixYes[i] * receivedYes[base + offset];
+		}
+		suffixNo[n] = 1;
+		suffixYes[n] = 1;
+		for(int i = n - 1; i >= 0; i--){
+			int offset = productOrder[base + i];
+			suffixNo[i] = suffixNo[i + 1] * receivedNo[base + offset];
+			suffixYes[i] = suffixYes[i + 1] * receivedYes[base + offset];
+		}
+	}
+	
+	/**
+	 * A HashMap<Integer,V> iterates over its buckets in order, and an Integer key ends up in bucket
+	 * (hash ^ (hash >>> 16)) & (capacity - 1). The capacity starts at 16 and doubles whenever the
+	 * map gets more than 3/4 full. Neighbours are inserted in ascending order, so within a bucket
+	 * they come in ascending order too.
+	 */
+	private void setupProductOrder(int sentence){
+		int leftmost = leftmostNeighbour(sentence);
+		int rightmost = rightmostNeighbour(sentence);
+		int count = rightmost - leftmost;
+		int capacity = 16;
+		while(count > (int)(capacity * 0.75f)){
+			capacity *= 2;
+		}
+		int base = sentence * width;
+		int n = 0;
+		for(int m = leftmost; m <= rightmost; m++){
+			if(m == sentence){
+				continue;
+			}
+			int bucket = bucket(m, capacity);
+			int i = n;
+			while(i > 0 && bucket(sentence - neighbourhood + productOrder[base + i - 1], capacity) > bucket){
+				productOrder[base + i] = productOrder[base + i - 1];
+				i--;
+			}
+			productOrder[base + i] = m - sentence + neighbourhood;
+			n++;
+		}
+		numReceived[sentence] = n;
+	}
+	
+	private static int bucket(int key, int capacity){
+		return (key ^ (key >>> 16)) & (capacity - 1);
+	}
+	
+	int index(int receiver, int sender){
+		return receiver * width + sender - receiver + neighbourhood;
+	}
+	
+	int receiverOf(int msgIndex){
+		return msgIndex / width;
+	}
+	
+	int senderOf(int msgIndex){
+		return msgIndex / width + msgIndex % width - neighbourhood;
+	}
+	
+	int leftmostNeighbour(int sentence){
+		return Math.max(0, sentence - neighbourhood);
+	}
+	
+	int rightmostNeighbour(int sentence){
+		return Math.min(numSentences - 1, sentence + neighbourhood);
+	}
+	
+	/**
+	 * The probability that two neighbouring sentences are both in the citation context,
+	 * given that the sender is.
+	 */
+	static interface Compatibility{
+		double probSame(int from, int to);
+	}
+}
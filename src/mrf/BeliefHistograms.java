@@ -0,0 +1,59 @@
+package mrf;
+
+import gnu.trove.iterator.TDoubleIntIterator;
+import gnu.trove.map.hash.TDoubleIntHashMap;
+import dataset.SentenceType;
+
+/**
+ * Debug histograms of start beliefs and belief changes, per sentence type. Every citer fills its
+ * own histograms, which are then merged into the classifier's, so that citers can be classified
+ * in parallel.
+ * @author jonathan
+ *
+ */
+class BeliefHistograms {
+	
+	final TDoubleIntHashMap EXPL_BELIEF_CHANGES = new TDoubleIntHashMap();
+	final TDoubleIntHashMap IMPL_BELIEF_CHANGES = new TDoubleIntHashMap();
+	final TDoubleIntHashMap NO_CITE_BELIEF_CHANGES = new TDoubleIntHashMap();
+	final TDoubleIntHashMap IMPL_START_BELIEFS = new TDoubleIntHashMap();
+	final TDoubleIntHashMap EXPL_START_BELIEFS = new TDoubleIntHashMap();
+	final TDoubleIntHashMap NO_CITE_START_BELIEFS = new TDoubleIntHashMap();
+	
+	void addStartBelief(SentenceType type, double roundedBelief){
+		if(type == SentenceType.EXPLICIT_REFERENCE){
+			EXPL_START_BELIEFS.adjustOrPutValue(roundedBelief, 1, 1);
+		}else if(type == SentenceType.IMPLICIT_REFERENCE){
+			IMPL_START_BELIEFS.adjustOrPutValue(roundedBelief, 1, 1);
+		}else if(type == SentenceType.NOT_REFERENCE){
+			NO_CITE_START_BELIEFS.adjustOrPutValue(roundedBelief, 1, 1);
+		}
+	}
+	
+	void addBeliefChange(SentenceType type, double roundedChange){
+		if(type == SentenceType.EXPLICIT_REFERENCE){
+			EXPL_BELIEF_CHANGES.adjustOrPutValue(roundedChange, 1, 1);
+		}else if(type == SentenceType.IMPLICIT_REFERENCE){
+			IMPL_BELIEF_CHANGES.adjustOrPutValue(roundedChange, 1, 1);
+		}else if(type == SentenceType.NOT_REFERENCE){
+			NO_CITE_BELIEF_CHANGES.adjustOrPutValue(roundedChange, 1, 1);
+		}
+	}
+	
+	synchronized void add(BeliefHistograms other){
+		add(EXPL_BELIEF_CHANGES, other.EXPL_BELIEF_CHANGES);
+		add(IMPL_BELIEF_CHANGES, other.IMPL_BELIEF_CHANGES);
+		add(NO_CITE_BELIEF_CHANGES, other.NO_CITE_BELIEF_CHANGES);
+		add(IMPL_START_BELIEFS, other.IMPL_START_BELIEFS);
+		add(EXPL_START_BELIEFS, other.EXPL_START_BELIEFS);
+		add(NO_CITE_START_BELIEFS, other.NO_CITE_START_BELIEFS);
+	}
+	
+	private static void add(TDoubleIntHashMap receiver, TDoubleIntHashMap added){
+		TDoubleIntIterator it = added.iterator();
+		while(it.hasNext()){
+			it.advance();
+			receiver.adjustOrPutValue(it.key(), it.value(), it.value());
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package mrf;
+
+import gnu.trove.list.array.TDoubleArrayList;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import weka.classifiers.evaluation.NominalPrediction;
+import weka.classifiers.evaluation.Prediction;
+import dataset.ResultImpl;
+import dataset.Sentence;
+import dataset.SentenceKey;
+import dataset.SentenceType;
+import dataset.Text;
+
+/**
+ * The final beliefs of the sentences of one citer, after belief propagation.
+ * Only the evaluation depends on the belief threshold, so any number of thresholds
+ * can be evaluated from the same beliefs.
+ * @author jonathan
+ *
+ * @param <T>
+ */
+class CiterBeliefs<T extends Text> {
+	
+	private static final int YES = 1;
+	
+	private final String citerTitle;
+	private final List<Sentence<T>> sentences;
+	private final List<double[]> beliefs;
+	private final long passedMillis;
+	final TDoubleArrayList maxResiduals; //per sweep
+	
+	CiterBeliefs(String citerTitle, List<Sentence<T>> sentences, List<double[]> beliefs, long passedMillis, 
+			TDoubleArrayList maxResiduals){
+		this.citerTitle = citerTitle;
+		this.sentences = sentences;
+		this.beliefs = beliefs;
+		this.passedMillis = passedMillis;
+		this.maxResiduals = maxResiduals;
+	}
+	
+	ResultImpl<T> result(String label, double beliefThreshold){
+		int truePos = 0;
+		int falsePos = 0;
+		int trueNeg = 0;
+		int falseNeg = 0;
+		
+		HashMap<SentenceKey<T>, Double> classificationProbabilities = new HashMap<SentenceKey<T>, Double>();
+		ArrayList<Prediction> predictions = new ArrayList<Prediction>();
+		
+		for(int i = 0; i < sentences.size(); i++){
+			Sentence<T> sentence = sentences.get(i);
+			double[] belief = beliefs.get(i);
+			classificationProbabilities.put(new SentenceKey<T>(citerTitle, sentence.sentenceIndex), belief[YES]);
+			
+			if(sentence.type == SentenceType.EXPLICIT_REFERENCE){
+				continue; //Don't count explicit citations in result!
+			}
+			
+			if(sentence.type == SentenceType.NOT_REFERENCE){
+				predictions.add(new NominalPrediction(0.0, belief));
+			}else{
+				predictions.add(new NominalPrediction(1.0, belief));
+			}
+			
+			boolean predictInContext = belief[YES] > beliefThreshold;
+			if(predictInContext){
+				if(sentence.type == SentenceType.NOT_REFERENCE){
+					falsePos ++;
+				}else{
+					truePos ++;
+				}
+			}else{
+				if(sentence.type == SentenceType.NOT_REFERENCE){
+					trueNeg ++;
+				}else{
+					falseNeg ++;
+				}
+			}
+		}
+		
+		return new ResultImpl<T>(label, truePos, falsePos, trueNeg, falseNeg, classificationProbabilities, passedMillis, predictions);
+	}
+	
+	/**
+	 * Debug: the number of implicit references that directly follow an explicit one,
+	 * but aren't predicted to be in the context.
+	 */
+	int falseNegativesAfterExplicit(double beliefThreshold){
+		int count = 0;
+		for(int i = 0; i < sentences.size(); i++){
+			if(sentences.get(i).type == SentenceType.IMPLICIT_REFERENCE && beliefs.get(i)[YES] <= beliefThreshold){
+				if(sentences.get(i-1).type == SentenceType.EXPLICIT_REFERENCE){
+					count ++;
+				}
+			}
+		}
+		return count;
+	}
+}
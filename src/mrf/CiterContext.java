@@ -0,0 +1,51 @@
+package mrf;
+
+import gnu.trove.list.array.TDoubleArrayList;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import dataset.Dataset;
+import dataset.Sentence;
+import dataset.Text;
+
+/**
+ * The state of the graphical classification of one citer. It is kept out of MRF_classifier
+ * so that several citers can be classified at the same time.
+ * @author jonathan
+ *
+ * @param <T>
+ */
+class CiterContext<T extends Text> {
+	
+	final Dataset<T> data;
+	final String citerTitle;
+	final List<Sentence<T>> sentences;
+	
+	double minSimilarity;
+	double maxSimilarity;
+	double minNeighbourSim;
+	double maxNeighbourSim;
+	
+	NeighbourSimilarities neighbourSimilarities;
+	TDoubleArrayList citedSimilarities; //not normalized
+	List<double[]> selfBeliefFeatures;
+	List<double[]> selfBeliefs;
+	List<Map<Integer,double[]>> allReceivedMessages;
+	ArrayMessages arrayMessages;
+	LogOddsMessages logOddsMessages;
+	double[] compatibilities; //see ArrayMessages.compatibilities()
+	long messageUpdates; //Only counted here for HashMap messages
+	double maxResidual; //Only here for HashMap messages
+	final TDoubleArrayList maxResiduals = new TDoubleArrayList(); //per sweep
+	
+	final BeliefHistograms histograms = new BeliefHistograms();
+	final HashMap<Integer, Double> debugSimilarities = new HashMap<Integer,Double>();
+	
+	CiterContext(Dataset<T> dataset, int citerIndex){
+		data = dataset;
+		citerTitle = dataset.citers.get(citerIndex).title;
+		sentences = dataset.citers.get(citerIndex).sentences;
+	}
+}
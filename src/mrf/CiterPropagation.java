@@ -0,0 +1,62 @@
+package mrf;
+
+import dataset.Text;
+
+/**
+ * A citer that has been set up by MRF_classifier.prepare(), whose flooding sweeps
+ * can be run one at a time.
+ * @author jonathan
+ *
+ * @param <T>
+ */
+public class CiterPropagation<T extends Text> {
+	
+	private final MRF_classifier<T> classifier;
+	private final CiterContext<T> context;
+	
+	CiterPropagation(MRF_classifier<T> classifier, CiterContext<T> context){
+		this.classifier = classifier;
+		this.context = context;
+	}
+	
+	/**
+	 * Lets every sentence send its messages once.
+	 * @return whether any message changed
+	 */
+	public boolean iterate(){
+		return classifier.iterate(context);
+	}
+	
+	/**
+	 * The largest change of any message in the last iteration
+	 */
+	public double maxResidual(){
+		return classifier.maxResidual(context);
+	}
+	
+	/**
+	 * Iterates until no message changes, or maxRuns of the params is reached.
+	 * @return the number of iterations
+	 */
+	public int iterateToConvergence(){
+		int run = 0;
+		while(classifier.params.maxRuns < 0 || run < classifier.params.maxRuns){
+			run ++;
+			if(!iterate()){
+				break;
+			}
+		}
+		return run;
+	}
+	
+	/**
+	 * Sets all messages back to their start values.
+	 */
+	public void restart(){
+		classifier.initMessages(context);
+	}
+	
+	public int numSentences(){
+		return context.sentences.size();
+	}
+}
@@ -0,0 +1,49 @@
+package mrf;
+
+import java.util.List;
+
+import util.Timer;
+import dataset.ResultImpl;
+import dataset.Sentence;
+import dataset.Text;
+
+/**
+ * A citer that has been classified by MRF_classifier.classifyIncrementally(), and can have 
+ * sentences appended to it as they are parsed. Only the new sentences and their neighbours are 
+ * processed again, and belief propagation starts from the previous messages.
+ * @author jonathan
+ *
+ * @param <T>
+ */
+public class IncrementalCiter<T extends Text> {
+	
+	private final MRF_classifier<T> classifier;
+	private final CiterContext<T> context;
+	private long passedMillis;
+	
+	IncrementalCiter(MRF_classifier<T> classifier, CiterContext<T> context, long passedMillis){
+		this.classifier = classifier;
+		this.context = context;
+		this.passedMillis = passedMillis;
+	}
+	
+	/**
+	 * Adds the sentences to the end of the citing paper, and updates the beliefs.
+	 */
+	public void append(List<Sentence<T>> sentences){
+		Timer t = new Timer();
+		classifier.appendSentences(context, sentences);
+		passedMillis = t.getMillis();
+	}
+	
+	public int numSentences(){
+		return context.sentences.size();
+	}
+	
+	/**
+	 * The classification of all sentences so far. Passed time is that of the last update.
+	 */
+	public ResultImpl<T> result(double beliefThreshold){
+		return classifier.getBeliefs(context, passedMillis).result(context.data.datasetLabel, beliefThreshold);
+	}
+}
@@ -0,0 +1,147 @@
+package mrf;
+
+import java.util.List;
+
+/**
+ * The messages passed between the sentences of one citer, as log-odds: a message (no, yes) is stored
+ * as log(yes / no). Multiplying messages is then a sum, and normalizing isn't needed, so nothing
+ * underflows however large the neighbourhood is. Self beliefs of exactly 0 or 1 become -/+ infinity,
+ * while messages always stay between 0 and the relatedness of the two sentences.
+ *
+ * All messages of a sweep are computed from the messages of the previous sweep, which gives loops without
+ * branches or dependencies between iterations (that the JIT can vectorize) but slightly different 
+ * results than the in-place sweeps of ArrayMessages. Rows have room for all 2 * neighbourhood + 1 neighbours. 
+ * Missing neighbours, and the sentence itself, have the message 0 (no information), so they don't affect sums.
+ * @author jonathan
+ *
+ */
+class LogOddsMessages {
+	
+	private final int numSentences;
+	private final int neighbourhood;
+	private final int width;
+	
+	private final double[] selfLogOdds;
+	private final double[] received; //by receiver: index [to * width + from - to + neighbourhood]
+	private final double[] sent; //by sender: index [from * width + to - from + neighbourhood]
+	private final double[] probSame; //by sender
+	private final double[] totals; //log-odds of the belief of each sentence
+	
+	double maxResidual; //the largest change of a message in the last sweep
+	long messageUpdates;
+	
+	/**
+	 * @param probSame compatibilities, as computed by ArrayMessages.compatibilities()
+	 */
+	LogOddsMessages(int numSentences, int neighbourhood, List<double[]> selfBeliefs, double[] probSame){
+		this.numSentences = numSentences;
+		this.neighbourhood = neighbourhood;
+		width = 2 * neighbourhood + 1;
+		selfLogOdds = new double[numSentences];
+		received = new double[numSentences * width];
+		sent = new double[numSentences * width];
+		this.probSame = new double[numSentences * width];
+		totals = new double[numSentences];
+		
+		for(int s = 0; s < numSentences; s++){
+			selfLogOdds[s] = Math.log(selfBeliefs.get(s)[1]) - Math.log(selfBeliefs.get(s)[0]);
+			for(int d = firstOffset(s); d <= lastOffset(s); d++){
+				if(d != neighbourhood){
+					int to = s + d - neighbourhood;
+					this.probSame[s * width + d] = probSame[to * width + 2 * neighbourhood - d];
+				}else{
+					this.probSame[s * width + d] = 0.5;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Lets every sentence send a message to each of its neighbours, based on the messages 
+	 * from the previous sweep.
+	 * @return whether any message changed more than delta (as a probability)
+	 */
+	boolean sweep(double delta){
+		for(int s = 0; s < numSentences; s++){
+			double sum = selfLogOdds[s];
+			int base = s * width;
+			for(int d = 0; d < width; d++){
+				sum += received[base + d];
+			}
+			totals[s] = sum;
+		}
+		
+		for(int from = 0; from < numSentences; from++){
+			int base = from * width;
+			double total = totals[from];
+			for(int d = firstOffset(from); d <= lastOffset(from); d++){
+				//The message that 'to' sent to 'from' is found at the same offset
+				sent[base + d] = message(total - received[base + d], probSame[base + d]);
+			}
+		}
+		
+		double maxResidual = 0;
+		for(int from = 0; from < numSentences; from++){
+			int base = from * width;
+			for(int d = firstOffset(from); d <= lastOffset(from); d++){
+				if(d != neighbourhood){
+					int to = from + d - neighbourhood;
+					int msgIndex = to * width + 2 * neighbourhood - d;
+					double residual = Math.abs(probability(sent[base + d]) - probability(received[msgIndex]));
+					maxResidual = Math.max(maxResidual, residual);
+					received[msgIndex] = sent[base + d];
+				}
+			}
+		}
+		messageUpdates += numMessages();
+		this.maxResidual = maxResidual;
+		return maxResidual > delta;
+	}
+	
+	/**
+	 * The log-odds of the message sent by a sentence whose belief about itself, excluding the
+	 * receiver, has the given log-odds. Same as the message of ArrayMessages, with compatibilities
+	 * (0.5, 0.5) if the sender isn't in the context, and (1 - probSame, probSame) if it is.
+	 */
+	private static double message(double logOdds, double probSame){
+		if(logOdds <= 0){
+			double odds = Math.exp(logOdds);
+			return Math.log(0.5 + probSame * odds) - Math.log(0.5 + (1 - probSame) * odds);
+		}
+		double inverseOdds = Math.exp(-logOdds);
+		return Math.log(0.5 * inverseOdds + probSame) - Math.log(0.5 * inverseOdds + 1 - probSame);
+	}
+	
+	private static double probability(double logOdds){
+		return 1.0 / (1 + Math.exp(-logOdds));
+	}
+	
+	/**
+	 * The number of messages that are sent in one sweep
+	 */
+	int numMessages(){
+		int num = 0;
+		for(int s = 0; s < numSentences; s++){
+			num += lastOffset(s) - firstOffset(s);
+		}
+		return num;
+	}
+	
+	double[] finalBelief(int sentence){
+		double logOdds = selfLogOdds[sentence];
+		int base = sentence * width;
+		for(int d = 0; d < width; d++){
+			logOdds += received[base + d];
+		}
+		double yes = probability(logOdds);
+		return new double[]{1 - yes, yes};
+	}
+	
+	private int firstOffset(int sentence){
+		return Math.max(0, sentence - neighbourhood) - sentence + neighbourhood;
+	}
+	
+	private int lastOffset(int sentence){
+		return Math.min(numSentences - 1, sentence + neighbourhood) - sentence + neighbourhood;
+	}
+}
@@ -0,0 +1,95 @@
+package mrf;
+
+import gnu.trove.list.array.TDoubleArrayList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import weka.classifiers.evaluation.Prediction;
+import weka.classifiers.evaluation.ThresholdCurve;
+import weka.core.Instances;
+import dataset.ResultImpl;
+import dataset.Text;
+
+/**
+ * The final beliefs of all sentences of a dataset, as computed by MRF_classifier.beliefs().
+ * Since belief propagation doesn't depend on the belief threshold, results for any number
+ * of thresholds, or the whole precision/recall and ROC curve, can be computed without running
+ * it again.
+ * @author jonathan
+ *
+ * @param <T>
+ */
+public class MRF_beliefs<T extends Text> {
+	
+	private static final int CONTEXT_CLASS_INDEX = 1;
+	
+	public final String datasetLabel;
+	private final List<CiterBeliefs<T>> citers;
+	
+	MRF_beliefs(String datasetLabel, List<CiterBeliefs<T>> citers){
+		this.datasetLabel = datasetLabel;
+		this.citers = citers;
+	}
+	
+	/**
+	 * The same result as MRF_classifier.classify(dataset) with the given threshold.
+	 */
+	public ResultImpl<T> result(double beliefThreshold){
+		ResultImpl<T> sumResult = new ResultImpl<T>(datasetLabel);
+		for(CiterBeliefs<T> citer : citers){
+			sumResult.add(citer.result(datasetLabel, beliefThreshold));
+		}
+		return sumResult;
+	}
+	
+	public List<ResultImpl<T>> results(List<Double> beliefThresholds){
+		List<ResultImpl<T>> results = new ArrayList<ResultImpl<T>>();
+		for(double threshold : beliefThresholds){
+			results.add(result(threshold));
+		}
+		return results;
+	}
+	
+	/**
+	 * The largest change of any message in each flooding sweep, per citer. Shows how fast
+	 * belief propagation converges, see StoppingRule.
+	 */
+	public List<TDoubleArrayList> maxResiduals(){
+		List<TDoubleArrayList> maxResiduals = new ArrayList<TDoubleArrayList>();
+		for(CiterBeliefs<T> citer : citers){
+			maxResiduals.add(citer.maxResiduals);
+		}
+		return maxResiduals;
+	}
+	
+	/**
+	 * One prediction per sentence that isn't an explicit citation, independent of threshold.
+	 */
+	public ArrayList<Prediction> predictions(){
+		return result(0.5).predictions();
+	}
+	
+	/**
+	 * Precision, recall, true and false positive rate etc. for every possible threshold
+	 * (see weka's ThresholdCurve).
+	 */
+	public Instances curve(){
+		return curve(predictions());
+	}
+	
+	/**
+	 * The curve of the merged predictions of several datasets.
+	 */
+	public static <T extends Text> Instances curve(List<MRF_beliefs<T>> beliefs){
+		ArrayList<Prediction> predictions = new ArrayList<Prediction>();
+		for(MRF_beliefs<T> datasetBeliefs : beliefs){
+			predictions.addAll(datasetBeliefs.predictions());
+		}
+		return curve(predictions);
+	}
+	
+	private static Instances curve(ArrayList<Prediction> predictions){
+		return new ThresholdCurve().getCurve(predictions, CONTEXT_CLASS_INDEX);
+	}
+}
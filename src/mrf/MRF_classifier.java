@@ -1,31 +1,40 @@
 package mrf;
 
 import gnu.trove.list.array.TDoubleArrayList;
-import gnu.trove.map.hash.TDoubleIntHashMap;
-import gnu.trove.map.hash.TIntDoubleHashMap;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import util.Printer;
 import util.Timer;
-import weka.classifiers.evaluation.NominalPrediction;
-import weka.classifiers.evaluation.Prediction;
 import dataset.CitingPaper;
 import dataset.Dataset;
 import dataset.LexicalHook;
 import dataset.ResultImpl;
 import dataset.Sentence;
-import dataset.SentenceKey;
 import dataset.SentenceType;
+import dataset.SimilarityProvider;
 import dataset.Text;
 import dataset.TextUtil;
 
 /**
  * The graphical classification algorithm, adopted by Qazvinian and Radev.
+ * All state of the citer being classified is kept in a CiterContext, so citers
+ * can be classified in parallel (see classify(Dataset, ForkJoinPool)).
  * @author jonathan
  *
  * @param <T>
@@ -34,40 +43,47 @@ public class MRF_classifier<T extends Text> {
 	
 	protected static Printer printer = new Printer(false);
 	private static final double DELTA = 0.02;
+	private static final double MAX_POTENTIAL_DRIFT = DELTA; //see appendSentences()
 	private static final int NO = 0;
 	private static final int YES = 1;
 	
-	int DEBUG_FALSE_NEG = 0;
-	int DEBUG_FALSE_NEG_AFTER_EXPL = 0;
+	final AtomicInteger DEBUG_FALSE_NEG = new AtomicInteger();
+	final AtomicInteger DEBUG_FALSE_NEG_AFTER_EXPL = new AtomicInteger();
 	
-	TDoubleIntHashMap EXPL_BELIEF_CHANGES = new TDoubleIntHashMap();
-	TDoubleIntHashMap IMPL_BELIEF_CHANGES = new TDoubleIntHashMap();
-	TDoubleIntHashMap NO_CITE_BELIEF_CHANGES = new TDoubleIntHashMap();
-	TDoubleIntHashMap IMPL_START_BELIEFS = new TDoubleIntHashMap();
-	TDoubleIntHashMap EXPL_START_BELIEFS = new TDoubleIntHashMap();
-	TDoubleIntHashMap NO_CITE_START_BELIEFS = new TDoubleIntHashMap();
-	
-	double minSimilarity;
-	double maxSimilarity;
-	
-
-	private double minNeighbourSim;
-	private double maxNeighbourSim;
+	final BeliefHistograms histograms = new BeliefHistograms();
+	private final AtomicLong messageUpdates = new AtomicLong();
 	
 	protected final MRF_params params;
-	protected Dataset<T> data;
-	protected List<Sentence<T>> sentences; //For the citer of the current iteration
-	
-	
-	private HashMap<Integer, Double> DEBUG_SIMILARITIES = new HashMap<Integer,Double>();
-	
-	private List<TIntDoubleHashMap> relatednessMemoization;
-	protected List<double[]> selfBeliefs;
-	protected List<Map<Integer,double[]>> allReceivedMessages;
+	private final Function<Dataset<T>, SimilarityProvider<T>> similarityProviders;
+	private final Map<Dataset<T>, SimilarityProvider<T>> similarities = 
+			Collections.synchronizedMap(new WeakHashMap<Dataset<T>, SimilarityProvider<T>>());
 	
 	public MRF_classifier(MRF_params params){
+		this(params, SimilarityProvider::pairwise);
+	}
+	
+	/**
+	 * @param similarityProviders creates the similarity provider of a dataset (e.g. SentenceIndex::new,
+	 * or d -> SimilarityProvider.cached(d, cache) to share similarities between classifiers), once per dataset.
+	 * The providers are kept until their dataset is garbage collected, so they mustn't refer to the dataset itself.
+	 */
+	public MRF_classifier(MRF_params params, Function<Dataset<T>, SimilarityProvider<T>> similarityProviders){
 		System.out.println("MRF  " + params);
+		if(params.leaveOneOut && params.messageStore != MRF_params.MessageStore.ARRAY){
+			throw new IllegalArgumentException("Leave-one-out products need the ARRAY message store: " + params);
+		}
+		if(params.schedule == MRF_params.Schedule.RESIDUAL && params.messageStore != MRF_params.MessageStore.ARRAY){
+			throw new IllegalArgumentException("The residual schedule needs the ARRAY message store: " + params);
+		}
 		this.params = params;
+		this.similarityProviders = similarityProviders;
+	}
+	
+	/**
+	 * @return the similarity provider that the classifier uses for the dataset
+	 */
+	public SimilarityProvider<T> similarities(Dataset<T> dataset){
+		return similarities.computeIfAbsent(dataset, similarityProviders);
 	}
 	
 	public ArrayList<ResultImpl<T>> classify(Collection<Dataset<T>> datasets){
@@ -79,12 +95,33 @@ public class MRF_classifier<T extends Text> {
 			results.add(classify(dataset));
 			i++;
 		}
-		System.out.println("expl: " + EXPL_BELIEF_CHANGES);
-		System.out.println("impl: " + IMPL_BELIEF_CHANGES);
-		System.out.println("no cite: " + NO_CITE_BELIEF_CHANGES);
+		printBeliefChanges();
 		return results;
 	}
 	
+	/**
+	 * Classifies the citers of each dataset in parallel, on the given pool.
+	 * The datasets are handled one at a time.
+	 */
+	public ArrayList<ResultImpl<T>> classify(Collection<Dataset<T>> datasets, ForkJoinPool pool){
+		System.out.println("Classifying multiple datasets (parallelism " + pool.getParallelism() + ") ...");
+		ArrayList<ResultImpl<T>> results = new ArrayList<ResultImpl<T>>();
+		int i = 0;
+		for(Dataset<T> dataset : datasets){
+			Printer.printBigProgressHeader(i, datasets.size());
+			results.add(classify(dataset, pool));
+			i++;
+		}
+		printBeliefChanges();
+		return results;
+	}
+	
+	private void printBeliefChanges(){
+		System.out.println("expl: " + histograms.EXPL_BELIEF_CHANGES);
+		System.out.println("impl: " + histograms.IMPL_BELIEF_CHANGES);
+		System.out.println("no cite: " + histograms.NO_CITE_BELIEF_CHANGES);
+	}
+	
 	public ResultImpl<T> classify(Dataset<T> dataset){
 		ResultImpl<T> sumResult = new ResultImpl<T>(dataset.datasetLabel);
 		System.out.print("\nMRF classifying " + dataset.datasetLabel + "  ");
@@ -92,68 +129,338 @@ public class MRF_classifier<T extends Text> {
 		System.out.print(dataset.getLexicalHooks()); 
 		printer.print(" ... ");
 		printer.resetProgress();
-		DEBUG_FALSE_NEG = 0;
-		DEBUG_FALSE_NEG_AFTER_EXPL = 0;
+		DEBUG_FALSE_NEG.set(0);
+		DEBUG_FALSE_NEG_AFTER_EXPL.set(0);
 		for(int i = 0; i < dataset.citers.size(); i++){
 			printer.progress();
 			ResultImpl<T> res = classifyOneCiter(i, dataset);
 			sumResult.add(res);
 		}
 		
-//		System.out.println("Expl start beliefs: " + EXPL_START_BELIEFS);
-//		System.out.println("Impl start beliefs: " + IMPL_START_BELIEFS);
-//		System.out.println("no_cite start beliefs: " + NO_CITE_START_BELIEFS);
-		
+//		System.out.println("Expl start beliefs: " + histograms.EXPL_START_BELIEFS);
+//		System.out.println("Impl start beliefs: " + histograms.IMPL_START_BELIEFS);
+//		System.out.println("no_cite start beliefs: " + histograms.NO_CITE_START_BELIEFS);
 		
+		printSummary(sumResult);
+		return sumResult;
+	}
+	
+	/**
+	 * Same as classify(dataset), but the citers are classified in parallel on the given pool.
+	 * The citer results are merged in citer order, so the result is the same as classify(dataset).
+	 * Requires that similarity() of the text class can be called from several threads at once.
+	 */
+	public ResultImpl<T> classify(Dataset<T> dataset, ForkJoinPool pool){
+		ResultImpl<T> sumResult = new ResultImpl<T>(dataset.datasetLabel);
+		System.out.print("\nMRF classifying " + dataset.datasetLabel + "  ");
+		System.out.print(dataset.getAcronyms() + ", ");
+		System.out.print(dataset.getLexicalHooks()); 
+		printer.print(" ... ");
+		printer.resetProgress();
+		DEBUG_FALSE_NEG.set(0);
+		DEBUG_FALSE_NEG_AFTER_EXPL.set(0);
+		List<ResultImpl<T>> citerResults;
+		try {
+			citerResults = pool.submit(() -> IntStream.range(0, dataset.citers.size()).parallel()
+					.mapToObj(i -> {
+						printer.progress();
+						return classifyOneCiter(i, dataset);
+					}).collect(Collectors.toList())).get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+		for(ResultImpl<T> res : citerResults){
+			sumResult.add(res);
+		}
+		printSummary(sumResult);
+		return sumResult;
+	}
+	
+	private void printSummary(ResultImpl<T> sumResult){
 		System.out.println();
 		System.out.println("False neg: " + DEBUG_FALSE_NEG);
 		System.out.println("False neg after expl: " + DEBUG_FALSE_NEG_AFTER_EXPL);
+		System.out.println("Message updates so far: " + messageUpdates);
 		printer.println(" pos F(1):" + Printer.toString(sumResult.positiveFMeasure(1)) + ", pos F(3):" + Printer.toString(sumResult.positiveFMeasure(3)));
 		printer.println(sumResult.confusionMatrixToString());
-		return sumResult;
+	}
+	
+	/**
+	 * Runs belief propagation on each dataset, one at a time, with the citers in parallel on the given pool.
+	 * The belief threshold of the params is not used.
+	 */
+	public List<MRF_beliefs<T>> beliefs(Collection<Dataset<T>> datasets, ForkJoinPool pool){
+		System.out.println("Propagating beliefs in multiple datasets (parallelism " + pool.getParallelism() + ") ...");
+		List<MRF_beliefs<T>> beliefs = new ArrayList<MRF_beliefs<T>>();
+		int i = 0;
+		for(Dataset<T> dataset : datasets){
+			Printer.printBigProgressHeader(i, datasets.size());
+			beliefs.add(beliefs(dataset, pool));
+			i++;
+		}
+		printBeliefChanges();
+		return beliefs;
+	}
+	
+	/**
+	 * Runs belief propagation on the citers of the dataset, in parallel on the given pool. The returned beliefs
+	 * can be evaluated with any threshold.
+	 */
+	public MRF_beliefs<T> beliefs(Dataset<T> dataset, ForkJoinPool pool){
+		System.out.print("\nMRF propagating beliefs in " + dataset.datasetLabel + " ... ");
+		printer.resetProgress();
+		List<CiterBeliefs<T>> citerBeliefs;
+		try {
+			citerBeliefs = pool.submit(() -> IntStream.range(0, dataset.citers.size()).parallel()
+					.mapToObj(i -> {
+						printer.progress();
+						return beliefsOneCiter(i, dataset);
+					}).collect(Collectors.toList())).get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+		return new MRF_beliefs<T>(dataset.datasetLabel, citerBeliefs);
+	}
+	
+	/**
+	 * Same beliefs as beliefs(datasets, pool), but a citing paper that is found in several datasets
+	 * (one per cited paper) is only set up once: the similarities between its sentences and the
+	 * compatibilities are shared, since they don't depend on the cited paper. Only the self beliefs
+	 * and the belief propagation are done once per dataset. The citing papers are handled in parallel.
+	 */
+	public List<MRF_beliefs<T>> beliefsSharingCiters(List<Dataset<T>> datasets, ForkJoinPool pool){
+		System.out.println("Propagating beliefs in multiple datasets, sharing citers (parallelism " + pool.getParallelism() + ") ...");
+		Map<String, List<int[]>> citerOccurrences = new LinkedHashMap<String, List<int[]>>();
+		List<List<CiterBeliefs<T>>> citerBeliefs = new ArrayList<List<CiterBeliefs<T>>>();
+		for(int d = 0; d < datasets.size(); d++){
+			List<CitingPaper<T>> citers = datasets.get(d).citers;
+			citerBeliefs.add(new ArrayList<CiterBeliefs<T>>(Collections.nCopies(citers.size(), (CiterBeliefs<T>)null)));
+			for(int i = 0; i < citers.size(); i++){
+				String title = citers.get(i).title;
+				if(!citerOccurrences.containsKey(title)){
+					citerOccurrences.put(title, new ArrayList<int[]>());
+				}
+				citerOccurrences.get(title).add(new int[]{d, i});
+			}
+		}
+		try {
+			pool.submit(() -> citerOccurrences.values().parallelStream().forEach(occurrences -> {
+				printer.progress();
+				CiterContext<T> first = null;
+				for(int[] occurrence : occurrences){
+					Timer t = new Timer();
+					CiterContext<T> c = new CiterContext<T>(datasets.get(occurrence[0]), occurrence[1]);
+					if(first != null && sameSentences(first, c)){
+						c.neighbourSimilarities = first.neighbourSimilarities;
+						c.compatibilities = first.compatibilities;
+					}
+					propagate(c);
+					citerBeliefs.get(occurrence[0]).set(occurrence[1], getBeliefs(c, t.getMillis()));
+					histograms.add(c.histograms);
+					if(first == null){
+						first = c;
+					}
+				}
+			})).get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+		System.out.println(citerOccurrences.size() + " distinct citers in " + datasets.size() + " datasets");
+		printBeliefChanges();
+		List<MRF_beliefs<T>> beliefs = new ArrayList<MRF_beliefs<T>>();
+		for(int d = 0; d < datasets.size(); d++){
+			beliefs.add(new MRF_beliefs<T>(datasets.get(d).datasetLabel, citerBeliefs.get(d)));
+		}
+		return beliefs;
+	}
+	
+	private boolean sameSentences(CiterContext<T> c1, CiterContext<T> c2){
+		if(c1.sentences.size() != c2.sentences.size()){
+			return false;
+		}
+		for(int i = 0; i < c1.sentences.size(); i++){
+			if(!c1.sentences.get(i).text.raw.equals(c2.sentences.get(i).text.raw)){
+				return false;
+			}
+		}
+		return true;
 	}
 	
 	public ResultImpl<T> classifyOneCiter(int citerIndex, Dataset<T> dataset){
+		CiterBeliefs<T> beliefs = beliefsOneCiter(citerIndex, dataset);
+		ResultImpl<T> result = beliefs.result(dataset.datasetLabel, params.beliefThreshold);
+		DEBUG_FALSE_NEG.addAndGet((int) result.confusionMatrix()[0][1]);
+		DEBUG_FALSE_NEG_AFTER_EXPL.addAndGet(beliefs.falseNegativesAfterExplicit(params.beliefThreshold));
+		return result;
+	}
+	
+	private CiterBeliefs<T> beliefsOneCiter(int citerIndex, Dataset<T> dataset){
 		Timer t = new Timer();
-		setup(citerIndex, dataset);
-		initMessages();
+		CiterContext<T> c = new CiterContext<T>(dataset, citerIndex);
+		propagate(c);
+		CiterBeliefs<T> beliefs = getBeliefs(c, t.getMillis());
+		histograms.add(c.histograms);
+		return beliefs;
+	}
+	
+	/**
+	 * Classifies the citer, and keeps its state so that sentences can be appended to it
+	 * later on, without starting over. Needs the ARRAY message store.
+	 */
+	public IncrementalCiter<T> classifyIncrementally(Dataset<T> dataset, int citerIndex){
+		if(params.messageStore != MRF_params.MessageStore.ARRAY){
+			throw new IllegalArgumentException("Incremental classification needs the ARRAY message store: " + params);
+		}
+		Timer t = new Timer();
+		CiterContext<T> c = new CiterContext<T>(dataset, citerIndex);
+		propagate(c);
+		return new IncrementalCiter<T>(this, c, t.getMillis());
+	}
+	
+	/**
+	 * Appends the sentences to the citer and propagates again, starting from the previous messages.
+	 * Only the new sentences and their old neighbours send messages at first, unless the new sentences
+	 * changed the normalization of the old self beliefs or compatibilities more than MAX_POTENTIAL_DRIFT.
+	 */
+	void appendSentences(CiterContext<T> c, List<Sentence<T>> newSentences){
+		int oldNumSentences = c.sentences.size();
+		c.sentences.addAll(newSentences);
+		c.neighbourSimilarities.append(c.sentences, similarities(c.data));
+		addSentenceFeatures(c, oldNumSentences);
+		normalize(c);
+		ArrayMessages previous = c.arrayMessages;
+		c.compatibilities = null;
+		initMessages(c);
+		c.arrayMessages.warmStart(previous);
+		
+		int firstActive = Math.max(0, oldNumSentences - params.neighbourhood);
+		if(c.arrayMessages.potentialDrift(previous) > MAX_POTENTIAL_DRIFT){
+			firstActive = 0;
+		}
+		boolean[] active = new boolean[c.sentences.size()];
+		Arrays.fill(active, firstActive, active.length, true);
 		int run = 0;
-		while(true){ 
+		while(c.arrayMessages.sweepActive(DELTA, active)){
+			run++;
 			if(params.maxRuns > -1 && run >= params.maxRuns){
 				break;
 			}
-			boolean anyChange = iterate();
-			if(!anyChange){
-				printer.println("Done after " + run + " iterations.");
-				break;
+		}
+		messageUpdates.addAndGet(c.arrayMessages.messageUpdates);
+	}
+	
+	/**
+	 * Sets up the citer, but doesn't propagate any beliefs. The sweeps can then be run one
+	 * at a time, for example when benchmarking.
+	 */
+	public CiterPropagation<T> prepare(Dataset<T> dataset, int citerIndex){
+		CiterContext<T> c = new CiterContext<T>(dataset, citerIndex);
+		setup(c);
+		initMessages(c);
+		return new CiterPropagation<T>(this, c);
+	}
+	
+	private void propagate(CiterContext<T> c){
+		setup(c);
+		initMessages(c);
+		if(params.schedule == MRF_params.Schedule.RESIDUAL){
+			long maxUpdates = Long.MAX_VALUE;
+			if(params.maxRuns > -1){
+				maxUpdates = (long)params.maxRuns * c.arrayMessages.numMessages();
+			}
+			long updates = new ResidualScheduler(c.arrayMessages).propagate(DELTA, maxUpdates);
+			printer.println("Done after " + updates + " message updates.");
+		}else{
+			int run = 0;
+			while(true){ 
+				if(params.maxRuns > -1 && run >= params.maxRuns){
+					break;
+				}
+				boolean anyChange = iterate(c);
+				c.maxResiduals.add(maxResidual(c));
+				if(!anyChange){
+					printer.println("Done after " + run + " iterations.");
+					break;
+				}
+				if(params.stoppingRule.stop(c.maxResiduals)){
+					printer.println("Stopped after " + run + " iterations.");
+					break;
+				}
+				
+				run++;
 			}
-			
-			run++;
 		}
-		CitingPaper<T> citer = dataset.citers.get(citerIndex);
-		return getResults(citer.title, dataset.datasetLabel, params.beliefThreshold, t.getMillis());
+		messageUpdates.addAndGet(numMessageUpdates(c));
 	}
 	
-	private void setup(int citerIndex, Dataset<T> dataset){
-		data = dataset;
-		sentences = dataset.citers.get(citerIndex).sentences;
-		
-		setupMinMaxNeighbourSim();
-		
-		int numSentences = sentences.size();
-		
-		relatednessMemoization = new ArrayList<TIntDoubleHashMap>();
-		for(int i = 0; i < numSentences; i++){
-			relatednessMemoization.add(new TIntDoubleHashMap());
+	private long numMessageUpdates(CiterContext<T> c){
+		if(c.arrayMessages != null){
+			return c.arrayMessages.messageUpdates;
+		}
+		if(c.logOddsMessages != null){
+			return c.logOddsMessages.messageUpdates;
+		}
+		return c.messageUpdates;
+	}
+	
+	/**
+	 * The largest change of any message in the last sweep
+	 */
+	double maxResidual(CiterContext<T> c){
+		if(c.arrayMessages != null){
+			return c.arrayMessages.maxResidual;
 		}
+		if(c.logOddsMessages != null){
+			return c.logOddsMessages.maxResidual;
+		}
+		return c.maxResidual;
+	}
+	
+	private void setup(CiterContext<T> c){
+		if(c.neighbourSimilarities == null){ //May be shared with another citer
+			c.neighbourSimilarities = new NeighbourSimilarities(c.sentences, params.neighbourhood, similarities(c.data));
+		}
+		c.citedSimilarities = new TDoubleArrayList();
+		c.selfBeliefFeatures = new ArrayList<double[]>();
+		addSentenceFeatures(c, 0);
+		normalize(c);
+		for(int i = 0; i < c.sentences.size(); i++){
+			double roundedBelief = Math.round(c.selfBeliefs.get(i)[1]*20.0)/20.0;
+			c.histograms.addStartBelief(c.sentences.get(i).type, roundedBelief);
+		}
+	}
+	
+	/**
+	 * Computes everything about the sentences from firstSentence and on that doesn't depend on 
+	 * the other sentences. This is where the time goes.
+	 */
+	private void addSentenceFeatures(CiterContext<T> c, int firstSentence){
+		Dataset<T> dataset = c.data;
+		SimilarityProvider<T> similarities = similarities(dataset);
+		for(int i = firstSentence; i < c.sentences.size(); i++){
+			Sentence<T> sentence = c.sentences.get(i);
+			c.citedSimilarities.add(similarities.similarity(sentence, dataset.citedContent));
+//					+ s.text.similarity(dataset.citedTitle)
+//					+ s.text.similarity(dataset.mergedExplicitCitations);
+			c.selfBeliefFeatures.add(selfBeliefFeatures(sentence, dataset.citedMainAuthor, dataset.getAcronyms(), dataset.getLexicalHooks()));
+		}
+	}
+	
+	/**
+	 * Normalizes the similarities and self beliefs over all sentences of the citer. Cheap, since it only
+	 * uses what addSentenceFeatures() has computed.
+	 */
+	private void normalize(CiterContext<T> c){
+		List<Sentence<T>> sentences = c.sentences;
+		int numSentences = sentences.size();
 		
-		TDoubleArrayList similarities = getSimilarities(dataset.citedContent, dataset.citedTitle, dataset.mergedExplicitCitations);
+		setupMinMaxNeighbourSim(c);
+		TDoubleArrayList similarities = getSimilarities(c);
 		
-		selfBeliefs = new ArrayList<double[]>();
 		List<Double> unnormalizedBeliefs = new ArrayList<Double>();
 		for(int i = 0; i < numSentences; i++){
 			double similarity = similarities.get(i);
-			double unnormalizedBelief = selfBelief(i, sentences.get(i), dataset.citedMainAuthor, similarity, dataset.getAcronyms(), dataset.getLexicalHooks());
+			double unnormalizedBelief = selfBelief(c, i, sentences.get(i), similarity, c.selfBeliefFeatures.get(i));
 			unnormalizedBeliefs.add(unnormalizedBelief);
 		}
 		
@@ -174,6 +481,7 @@ public class MRF_classifier<T extends Text> {
 //		System.out.println("max belief sentence: " + sentences.get(maxIndex).text.raw);
 		//TODO
 		
+		c.selfBeliefs = new ArrayList<double[]>();
 		for(int i = 0; i < numSentences; i++){
 			double unnormalizedBelief = unnormalizedBeliefs.get(i);
 			double normalized;
@@ -185,40 +493,29 @@ public class MRF_classifier<T extends Text> {
 				normalized = 0.5;
 			}
 //			if(sentence.type != SentenceType.NOT_REFERENCE){
-//				System.out.println("\n" + data.citedMainAuthor + "   " +  sentence.text.raw);
+//				System.out.println("\n" + c.data.citedMainAuthor + "   " +  sentence.text.raw);
 //				System.out.println(sentence.type);
-//				System.out.println("sim: " + DEBUG_SIMILARITIES.get(i));
+//				System.out.println("sim: " + c.debugSimilarities.get(i));
 //				System.out.println("belief: " + normalized);	
 //			}
 			
-			double roundedBelief = Math.round(normalized*20.0)/20.0;
-			
-			if(sentence.type == SentenceType.EXPLICIT_REFERENCE){
-				EXPL_START_BELIEFS.adjustOrPutValue(roundedBelief, 1, 1);
-			}else if(sentence.type == SentenceType.IMPLICIT_REFERENCE){
-				IMPL_START_BELIEFS.adjustOrPutValue(roundedBelief, 1, 1);
-			}else if(sentence.type == SentenceType.NOT_REFERENCE){
-				NO_CITE_START_BELIEFS.adjustOrPutValue(roundedBelief, 1, 1);
-			}
-			
-			selfBeliefs.add(new double[]{1 - normalized, normalized});
+			c.selfBeliefs.add(new double[]{1 - normalized, normalized});
 		}
 	}
 	
-	private void setupMinMaxNeighbourSim(){
+	private void setupMinMaxNeighbourSim(CiterContext<T> c){
+		List<Sentence<T>> sentences = c.sentences;
 		int numSentences = sentences.size();
 //		Sentence<T> maxFrom = null;
 //		Sentence<T> maxTo = null;
-		minNeighbourSim = Double.MAX_VALUE;
-		maxNeighbourSim = Double.MIN_VALUE;
+		double minNeighbourSim = Double.MAX_VALUE;
+		double maxNeighbourSim = Double.MIN_VALUE;
 		for(int from = 0; from < numSentences; from++){
 			int leftmostNeighbour = Math.max(0, from - params.neighbourhood);
 			int rightmostNeighbour = Math.min(numSentences - 1, from + params.neighbourhood);
 			for(int to = leftmostNeighbour; to <= rightmostNeighbour; to++){
 				if(to != from){
-					Sentence<T> sTo = sentences.get(to);
-					Sentence<T> sFrom = sentences.get(from);
-					double sim = sTo.text.similarity(sFrom.text);
+					double sim = c.neighbourSimilarities.get(to, from);
 					if(sim < minNeighbourSim){
 						minNeighbourSim = sim;
 					}
@@ -230,6 +527,8 @@ public class MRF_classifier<T extends Text> {
 				}
 			}
 		}
+		c.minNeighbourSim = minNeighbourSim;
+		c.maxNeighbourSim = maxNeighbourSim;
 //		System.out.println("min neighbour sim : " + minNeighbourSim);
 //		System.out.println("max neighbour sim : " + maxNeighbourSim);
 //		try{
@@ -241,17 +540,14 @@ public class MRF_classifier<T extends Text> {
 		
 	}
 	
-	private TDoubleArrayList getSimilarities(T citedContent, T citedTitle, T mergedExplicitCitations){
-		TDoubleArrayList similarities = new TDoubleArrayList();
-		minSimilarity = Double.MAX_VALUE;
-		maxSimilarity = Double.MIN_VALUE;
-		for(Sentence<T> s : sentences){
-			double sim = s.text.similarity(citedContent);
-//					+ s.text.similarity(citedTitle)
-//					+ s.text.similarity(mergedExplicitCitations);
+	private TDoubleArrayList getSimilarities(CiterContext<T> c){
+		TDoubleArrayList similarities = new TDoubleArrayList(c.citedSimilarities);
+		double minSimilarity = Double.MAX_VALUE;
+		double maxSimilarity = Double.MIN_VALUE;
+		for(int i = 0; i < similarities.size(); i++){
+			double sim = similarities.get(i);
 			minSimilarity = Math.min(minSimilarity, sim);
 			maxSimilarity = Math.max(maxSimilarity, sim);
-			similarities.add(sim);
 		}
 		
 		//Normalization
@@ -268,39 +564,54 @@ public class MRF_classifier<T extends Text> {
 			}
 			similarities.set(i, normalized); //TODO
 		}
+		c.minSimilarity = minSimilarity;
+		c.maxSimilarity = maxSimilarity;
 		return similarities;
 	}
 	
-	private double selfBelief(
-			int sentenceIndex,
+	private static final int EXPLICIT_CITATION = 0;
+	private static final int DET_WORK = 1;
+	private static final int HOOK_OR_ACRONYM = 2;
+	
+	private double[] selfBeliefFeatures(
 			Sentence<T> sentence, 
 			String authorLastName, 
-			double similarity, 
 			List<String> acronyms,
 			List<LexicalHook> lexicalHooks){
 		
 		List<String> rawWords = sentence.text.rawWords;
 		Printer p = new Printer(false);
-		double score = 0;
-		
-		score += similarity;
+		double[] features = new double[3];
 		
 		p.println("\n\n" + sentence.text.raw); //TODO
-		p.println("Similarity: " + similarity);
-		DEBUG_SIMILARITIES.put(sentenceIndex, similarity);
 		
 		if(TextUtil.instance().containsExplicitCitation(rawWords, authorLastName)){
-			score += 1;
+			features[EXPLICIT_CITATION] = 1;
 			p.println("contains main author"); //TODO
 		}
 		
 		if(TextUtil.instance().mrfContainsDetWork(rawWords) || TextUtil.instance().startsWithLimitedDet(rawWords)){
-			score += 1;
+			features[DET_WORK] = 1;
 		}
 		
 		double hookScore = TextUtil.instance().containsHookScore(sentence.text.raw, lexicalHooks);
 		double acronymScore = TextUtil.instance().containsAcronymScore(rawWords, acronyms);
-		score += 1 * Math.max(hookScore, acronymScore);
+		features[HOOK_OR_ACRONYM] = Math.max(hookScore, acronymScore);
+		return features;
+	}
+	
+	private double selfBelief(CiterContext<T> c, int sentenceIndex, Sentence<T> sentence, double similarity, double[] features){
+		Printer p = new Printer(false);
+		double score = 0;
+		
+		score += similarity;
+		
+		p.println("Similarity: " + similarity);
+		c.debugSimilarities.put(sentenceIndex, similarity);
+		
+		score += features[EXPLICIT_CITATION];
+		score += features[DET_WORK];
+		score += 1 * features[HOOK_OR_ACRONYM];
 		
 		if(Double.isNaN(score)){
 			throw new RuntimeException("score == NaN");
@@ -309,9 +620,23 @@ public class MRF_classifier<T extends Text> {
 		return score;
 	}
 	
-	private void initMessages(){
-		allReceivedMessages = new ArrayList<Map<Integer,double[]>>();
-		int numSentences = sentences.size();
+	void initMessages(CiterContext<T> c){
+		if(params.messageStore != MRF_params.MessageStore.HASH_MAP && c.compatibilities == null){
+			c.compatibilities = ArrayMessages.compatibilities(c.sentences.size(), params.neighbourhood, 
+					(from, to) -> compatibility(c, YES, from, to)[YES]);
+		}
+		if(params.messageStore == MRF_params.MessageStore.ARRAY){
+			c.arrayMessages = new ArrayMessages(c.sentences.size(), params.neighbourhood, c.selfBeliefs, 
+					c.compatibilities, params.leaveOneOut);
+			return;
+		}
+		if(params.messageStore == MRF_params.MessageStore.LOG_ODDS){
+			c.logOddsMessages = new LogOddsMessages(c.sentences.size(), params.neighbourhood, c.selfBeliefs, 
+					c.compatibilities);
+			return;
+		}
+		c.allReceivedMessages = new ArrayList<Map<Integer,double[]>>();
+		int numSentences = c.sentences.size();
 		for(int s = 0; s < numSentences; s++){
 			Map<Integer, double[]> receivedMessages = new HashMap<Integer, double[]>();
 			for(int m = Math.max(0, s-params.neighbourhood); m <= Math.min(s+params.neighbourhood, numSentences-1); m++){
@@ -319,93 +644,56 @@ public class MRF_classifier<T extends Text> {
 					receivedMessages.put(m, new double[]{0.5,0.5}); //start value for msg
 				}
 			}
-			allReceivedMessages.add(receivedMessages);
+			c.allReceivedMessages.add(receivedMessages);
 		}
 	}
 	
-	private ResultImpl<T> getResults(String citerTitle, String label, double beliefThreshold, long passedMillis){
-		int truePos = 0;
-		int falsePos = 0;
-		int trueNeg = 0;
-		int falseNeg = 0;
-		
-		ArrayList<Integer> fpIndices = new ArrayList<Integer>();
-		ArrayList<Integer> fnIndices = new ArrayList<Integer>();
-		HashMap<SentenceKey<T>, Double> classificationProbabilities = new HashMap<SentenceKey<T>, Double>();
-		ArrayList<Prediction> predictions = new ArrayList<Prediction>();
+	CiterBeliefs<T> getBeliefs(CiterContext<T> c, long passedMillis){
+		List<Sentence<T>> sentences = c.sentences;
+		List<double[]> beliefs = new ArrayList<double[]>();
 		
 		for(int i = 0; i < sentences.size(); i++){
 			Sentence<T> sentence = sentences.get(i);
-			double[] belief = finalBelief(i);
-			classificationProbabilities.put(new SentenceKey<T>(citerTitle, sentence.sentenceIndex), belief[1]);
+			double[] belief = finalBelief(c, i);
+			beliefs.add(belief);
 			
-			double beliefChange = belief[1] - selfBeliefs.get(i)[1];
+			double beliefChange = belief[1] - c.selfBeliefs.get(i)[1];
 			double roundedChange = (double)(Math.round(beliefChange * 20.0)) / 20.0;
 			if(roundedChange > 0.25){
 				roundedChange = 0.3; //Put them all in same bucket
 			}
+			c.histograms.addBeliefChange(sentence.type, roundedChange);
 			
-			if(sentence.type == SentenceType.EXPLICIT_REFERENCE){
-				EXPL_BELIEF_CHANGES.adjustOrPutValue(roundedChange, 1, 1);
-			}else if(sentence.type == SentenceType.IMPLICIT_REFERENCE){
-				IMPL_BELIEF_CHANGES.adjustOrPutValue(roundedChange, 1, 1);
-			}else if(sentence.type == SentenceType.NOT_REFERENCE){
-				NO_CITE_BELIEF_CHANGES.adjustOrPutValue(roundedChange, 1, 1);
-			}
-			
-			if(sentence.type == SentenceType.EXPLICIT_REFERENCE){
-//				System.out.println();
-//				System.out.println("EXPLICIT: " + sentence.text.raw);
-//				System.out.println();
-				continue; //Don't count explicit citations in result!
-			}
-
 //			DecimalFormat f = new DecimalFormat("#.##");
-//			System.out.println( sentence.type + " (" + f.format(selfBeliefs.get(i)[1]) + " -> " + f.format(belief[1]) +  "):   " + sentence.text.raw); //TODO
-			
-			if(sentence.type == SentenceType.NOT_REFERENCE){
-				predictions.add(new NominalPrediction(0.0, belief));
-			}else{
-				predictions.add(new NominalPrediction(1.0, belief));
-			}
-			
-			boolean predictInContext = belief[1] > beliefThreshold;
-			if(predictInContext){
-				if(sentence.type == SentenceType.NOT_REFERENCE){
-					fpIndices.add(i);
-					falsePos ++;
-				}else{
-					truePos ++;
-				}
-			}else{
-				if(sentence.type == SentenceType.NOT_REFERENCE){
-					trueNeg ++;
-				}else{
-					DEBUG_FALSE_NEG ++;
-					if(sentences.get(i).type == SentenceType.IMPLICIT_REFERENCE){
-						if(sentences.get(i-1).type == SentenceType.EXPLICIT_REFERENCE){
-							DEBUG_FALSE_NEG_AFTER_EXPL ++;
-						}
-					}
-
-					fnIndices.add(i);
-					falseNeg ++;
-				}
-			}
+//			System.out.println( sentence.type + " (" + f.format(c.selfBeliefs.get(i)[1]) + " -> " + f.format(belief[1]) +  "):   " + sentence.text.raw); //TODO
 		}
 		
-		return new ResultImpl<T>(label, truePos, falsePos, trueNeg, falseNeg, classificationProbabilities, passedMillis, predictions);	
+		return new CiterBeliefs<T>(c.citerTitle, sentences, beliefs, passedMillis, c.maxResiduals);
 	}
 	
-	private double[] finalBelief(int sentence){
-		double[] productReceived = productOfValues(allReceivedMessages.get(sentence));
-		double[] belief = selfBeliefs.get(sentence);
+	/**
+	 * The total number of messages sent so far, by all classifications. Used to compare 
+	 * the schedules.
+	 */
+	public long getMessageUpdates(){
+		return messageUpdates.get();
+	}
+	
+	private double[] finalBelief(CiterContext<T> c, int sentence){
+		if(params.messageStore == MRF_params.MessageStore.ARRAY){
+			return c.arrayMessages.finalBelief(sentence);
+		}
+		if(params.messageStore == MRF_params.MessageStore.LOG_ODDS){
+			return c.logOddsMessages.finalBelief(sentence);
+		}
+		double[] productReceived = productOfValues(c.allReceivedMessages.get(sentence));
+		double[] belief = c.selfBeliefs.get(sentence);
 		double[] totalBeliefAboutSelf = new double[]{
 				belief[NO] * productReceived[NO], 
 				belief[YES] * productReceived[YES]};
 		normalizeProbabilityVector(totalBeliefAboutSelf);
 		
-//		Sentence<T> s = sentences.get(sentence);
+//		Sentence<T> s = c.sentences.get(sentence);
 //		if(s.type == SentenceType.IMPLICIT_REFERENCE){
 //			System.out.println(sentence + ". " + s.type + "\t" + s.text.rawWords);
 //			NumberFormat f = new DecimalFormat("#0.00"); 
@@ -416,22 +704,29 @@ public class MRF_classifier<T extends Text> {
 		return totalBeliefAboutSelf;
 	}
 
-	private boolean iterate(){
-		int numSentences = sentences.size();
+	boolean iterate(CiterContext<T> c){
+		if(params.messageStore == MRF_params.MessageStore.ARRAY){
+			return c.arrayMessages.sweep(DELTA);
+		}
+		if(params.messageStore == MRF_params.MessageStore.LOG_ODDS){
+			return c.logOddsMessages.sweep(DELTA);
+		}
+		c.maxResidual = 0;
+		int numSentences = c.sentences.size();
 		boolean anyChange = false;
 		for(int from = 0; from < numSentences; from++){
-			double[] belief = selfBeliefs.get(from);
+			double[] belief = c.selfBeliefs.get(from);
 			
 //			System.out.println(from + ": ");
-//			System.out.println(sentences.get(from).text.raw);
-//			System.out.println("sim: " + DEBUG_SIMILARITIES.get(from));
+//			System.out.println(c.sentences.get(from).text.raw);
+//			System.out.println("sim: " + c.debugSimilarities.get(from));
 //			System.out.println("belief: " + beliefToString(belief) + "\n");
-			Map<Integer, double[]> receivedMessages = allReceivedMessages.get(from);
+			Map<Integer, double[]> receivedMessages = c.allReceivedMessages.get(from);
 			int leftmostNeighbour = Math.max(0, from - params.neighbourhood);
 			int rightmostNeighbour = Math.min(numSentences - 1, from + params.neighbourhood);
 			for(int to = leftmostNeighbour; to <= rightmostNeighbour; to++){
 				if(to != from){
-					boolean msgChanged = sendMessage(from, to, receivedMessages, belief);
+					boolean msgChanged = sendMessage(c, from, to, receivedMessages, belief);
 					if(msgChanged){
 						anyChange = true;
 					}
@@ -441,7 +736,7 @@ public class MRF_classifier<T extends Text> {
 		return anyChange;
 	}
 	
-	private boolean sendMessage(int from, int to, Map<Integer, double[]> receivedMessages, double[] belief){
+	private boolean sendMessage(CiterContext<T> c, int from, int to, Map<Integer, double[]> receivedMessages, double[] belief){
 		double[] productReceived = productOfValuesExcept(receivedMessages, to);
 		double[] totalBeliefAboutSelf = new double[]{
 				belief[NO] * productReceived[NO], 
@@ -451,8 +746,8 @@ public class MRF_classifier<T extends Text> {
 		double[] message = new double[2];
 		
 		double[][] compatibility = new double[][]{
-				compatibility(NO, from, to),
-				compatibility(YES, from, to)
+				compatibility(c, NO, from, to),
+				compatibility(c, YES, from, to)
 		};
 		
 		message[NO] =
@@ -465,15 +760,17 @@ public class MRF_classifier<T extends Text> {
 		normalizeProbabilityVector(message);
 		
 		boolean msgChanged = false;
-		if(allReceivedMessages.get(to).containsKey(from)){
-			double[] prevMsg = allReceivedMessages.get(to).get(from);
+		if(c.allReceivedMessages.get(to).containsKey(from)){
+			double[] prevMsg = c.allReceivedMessages.get(to).get(from);
 			
 			if(Math.abs(prevMsg[0] - message[0]) > DELTA || Math.abs(prevMsg[1] - message[1]) > DELTA){
 				msgChanged = true;
 			}
+			c.maxResidual = Math.max(c.maxResidual, Math.max(Math.abs(prevMsg[0] - message[0]), Math.abs(prevMsg[1] - message[1])));
 		}
 		
-		allReceivedMessages.get(to).put(from, message);
+		c.allReceivedMessages.get(to).put(from, message);
+		c.messageUpdates ++;
 		return msgChanged;
 	}
 	
@@ -483,7 +780,8 @@ public class MRF_classifier<T extends Text> {
 		}
 		double sum = probabilities[0] + probabilities[1];
 		if(sum == 0){
-			probabilities = new double[]{0.5,0.5};
+			probabilities[0] = 0.5;
+			probabilities[1] = 0.5;
 		}else{
 			probabilities[0] /= sum;
 			probabilities[1] /= sum;
@@ -510,15 +808,15 @@ public class MRF_classifier<T extends Text> {
 		return prod;
 	}
 	
-	private double[] compatibility(int context1, int s1, int s2){
-//		T t1 = sentences.get(s1).text;
-//		T t2 = sentences.get(s2).text;
+	private double[] compatibility(CiterContext<T> c, int context1, int s1, int s2){
+//		T t1 = c.sentences.get(s1).text;
+//		T t2 = c.sentences.get(s2).text;
 		
 		if(context1 == NO){
 			return new double[]{0.5,0.5};
 		}
 		
-		double relatedness = relatedness(s1,s2);
+		double relatedness = relatedness(c, s1,s2);
 //		double relatedness = t1.similarity(t2);
 		double probSame = 1.0 / (1 + Math.exp( - relatedness)); //interval : [0.5 , 1]
 		if(probSame > 1.01){
@@ -527,27 +825,19 @@ public class MRF_classifier<T extends Text> {
 		return new double[]{1 - probSame, probSame};
 	}
 	
-	private double relatedness(int s1, int s2){
-		
-		if(relatednessMemoization.get(s1).get(s2) != 0){
-			return relatednessMemoization.get(s1).get(s2);
-		}
-		if(relatednessMemoization.get(s2).get(s1) != 0){
-			return relatednessMemoization.get(s2).get(s1);
-		}
+	private double relatedness(CiterContext<T> c, int s1, int s2){
 		
-		T t1 = sentences.get(s1).text;
-		T t2 = sentences.get(s2).text;
+		T t1 = c.sentences.get(s1).text;
+		T t2 = c.sentences.get(s2).text;
 		
-		double similarity = t1.similarity(t2);
+		double similarity = c.neighbourSimilarities.get(s1, s2);
 		
 //		return similarity;
 		
 		
 		//TODO normalized neighbour sim
 		double FACTOR = 0.5; //avg. max belief for n-grams
-		similarity = FACTOR * (similarity-minNeighbourSim) / (maxNeighbourSim-minNeighbourSim); 
-//		relatednessMemoization.get(s1).put(s2, normalizedSim);
+		similarity = FACTOR * (similarity-c.minNeighbourSim) / (c.maxNeighbourSim-c.minNeighbourSim); 
 		
 		if(similarity > 1){
 			similarity = 1;
@@ -10,23 +10,99 @@ public class MRF_params {
 	private static int DEFAULT_NEIGHBOURHOOD = 3;
 	private static double DEFAULT_BELIEF_THRESHOLD = 0.4;
 	private static int DEFAULT_MAX_RUNS = 10;
+	private static MessageStore DEFAULT_MESSAGE_STORE = MessageStore.HASH_MAP;
+	private static boolean DEFAULT_LEAVE_ONE_OUT = false;
+	private static Schedule DEFAULT_SCHEDULE = Schedule.FLOODING;
+	private static StoppingRule DEFAULT_STOPPING_RULE = StoppingRule.NONE;
 	
 	final int neighbourhood;
 	final double beliefThreshold;
 	final int maxRuns;
+	final MessageStore messageStore;
+	final boolean leaveOneOut;
+	final Schedule schedule;
+	final StoppingRule stoppingRule;
 	
 	
 	public MRF_params(int neighbourhood, double beliefThreshold, int maxRuns) {
+		this(neighbourhood, beliefThreshold, maxRuns, DEFAULT_MESSAGE_STORE, DEFAULT_LEAVE_ONE_OUT, DEFAULT_SCHEDULE, 
+				DEFAULT_STOPPING_RULE);
+	}
+	
+	private MRF_params(int neighbourhood, double beliefThreshold, int maxRuns, MessageStore messageStore, 
+			boolean leaveOneOut, Schedule schedule, StoppingRule stoppingRule) {
 		this.neighbourhood = neighbourhood;
 		this.beliefThreshold = beliefThreshold;
 		this.maxRuns = maxRuns;
+		this.messageStore = messageStore;
+		this.leaveOneOut = leaveOneOut;
+		this.schedule = schedule;
+		this.stoppingRule = stoppingRule;
 	}
 	
 	public MRF_params(){
 		this(DEFAULT_NEIGHBOURHOOD, DEFAULT_BELIEF_THRESHOLD, DEFAULT_MAX_RUNS);
 	}
 	
+	/**
+	 * Same parameters, but with messages stored in the given way.
+	 * @param messageStore
+	 * @return
+	 */
+	public MRF_params withMessageStore(MessageStore messageStore){
+		return new MRF_params(neighbourhood, beliefThreshold, maxRuns, messageStore, leaveOneOut, schedule, stoppingRule);
+	}
+	
+	/**
+	 * Same parameters, but the product of all received messages except one is computed from
+	 * prefix and suffix products (O(k) per sentence instead of O(k^2)). Needs the ARRAY message store.
+	 * @param leaveOneOut
+	 * @return
+	 */
+	public MRF_params withLeaveOneOut(boolean leaveOneOut){
+		return new MRF_params(neighbourhood, beliefThreshold, maxRuns, messageStore, leaveOneOut, schedule, stoppingRule);
+	}
+	
+	/**
+	 * Same parameters, but with the given order of sending messages. The RESIDUAL schedule
+	 * needs the ARRAY message store. maxRuns then limits the number of messages sent to what
+	 * maxRuns sweeps would send.
+	 * @param schedule
+	 * @return
+	 */
+	public MRF_params withSchedule(Schedule schedule){
+		return new MRF_params(neighbourhood, beliefThreshold, maxRuns, messageStore, leaveOneOut, schedule, stoppingRule);
+	}
+	
+	/**
+	 * Same parameters, but flooding sweeps may stop early, according to the given rule.
+	 * @param stoppingRule
+	 * @return
+	 */
+	public MRF_params withStoppingRule(StoppingRule stoppingRule){
+		return new MRF_params(neighbourhood, beliefThreshold, maxRuns, messageStore, leaveOneOut, schedule, stoppingRule);
+	}
+	
 	public String toString(){
-		return "{neighbourhood: " + neighbourhood + ", threshold: " + beliefThreshold + ", maxRuns: " + maxRuns + "}";
+		return "{neighbourhood: " + neighbourhood + ", threshold: " + beliefThreshold + ", maxRuns: " + maxRuns
+				+ ", messages: " + messageStore + (leaveOneOut ? " (leave-one-out)" : "") + ", schedule: " + schedule
+				+ (stoppingRule != StoppingRule.NONE ? " (adaptive stopping)" : "") + "}";
+	}
+	
+	/**
+	 * How the messages passed between sentences are stored. HASH_MAP and ARRAY give the exact same results.
+	 */
+	public static enum MessageStore{
+		HASH_MAP, //One map of boxed messages per sentence
+		ARRAY, //Flat primitive arrays, see ArrayMessages
+		LOG_ODDS; //Flat primitive arrays of log-odds, robust for large neighbourhoods, see LogOddsMessages
+	}
+	
+	/**
+	 * In which order messages are sent.
+	 */
+	public static enum Schedule{
+		FLOODING, //All messages in every sweep, until no message changes
+		RESIDUAL; //The message that would change the most first, see ResidualScheduler
 	}
 }
@@ -0,0 +1,69 @@
+package mrf;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import dataset.Sentence;
+import dataset.SimilarityProvider;
+import dataset.Text;
+
+/**
+ * The similarities between all sentences of a citer and their neighbours, stored as a band
+ * of a similarity matrix: row s holds similarity(s, s - neighbourhood) ... similarity(s, s + neighbourhood).
+ * Every similarity is looked up exactly once, in both directions since Text.similarity()
+ * isn't necessarily symmetric. They come from the classifier's SimilarityProvider, which may
+ * share them with other citers and classifiers (see SimilarityCache). Entries outside the citer, and on the diagonal, are NaN.
+ * Sentences can be appended to the citer afterwards, see append().
+ * @author jonathan
+ *
+ */
+class NeighbourSimilarities {
+	
+	private final int neighbourhood;
+	private final int width;
+	private double[][] similarities;
+	private int numSentences;
+	
+	<T extends Text> NeighbourSimilarities(List<Sentence<T>> sentences, int neighbourhood, SimilarityProvider<T> provider){
+		this.neighbourhood = neighbourhood;
+		width = 2 * neighbourhood + 1;
+		similarities = new double[sentences.size()][];
+		append(sentences, provider);
+	}
+	
+	/**
+	 * Computes the similarities of the sentences that have been added to the end of the list
+	 * since last time. Only the last 'neighbourhood' old sentences get new neighbours.
+	 */
+	<T extends Text> void append(List<Sentence<T>> sentences, SimilarityProvider<T> provider){
+		int oldNumSentences = numSentences;
+		int newNumSentences = sentences.size();
+		if(newNumSentences > similarities.length){
+			similarities = Arrays.copyOf(similarities, Math.max(newNumSentences, 2 * similarities.length));
+		}
+		IntStream.range(Math.max(0, oldNumSentences - neighbourhood), newNumSentences).parallel().forEach(s1 -> {
+			if(similarities[s1] == null){
+				similarities[s1] = new double[width];
+			}
+			double[] row = similarities[s1];
+			T t1 = sentences.get(s1).text;
+			for(int offset = 0; offset < width; offset++){
+				int s2 = s1 + offset - neighbourhood;
+				if(s2 < 0 || s2 >= newNumSentences || s2 == s1){
+					row[offset] = Double.NaN;
+				}else if(s1 >= oldNumSentences || s2 >= oldNumSentences){
+					row[offset] = provider.similarity(t1, sentences.get(s2).text);
+				}
+			}
+		});
+		numSentences = newNumSentences;
+	}
+	
+	/**
+	 * @return sentence(s1).similarity(sentence(s2)), where s2 must be a neighbour of s1
+	 */
+	double get(int s1, int s2){
+		return similarities[s1][s2 - s1 + neighbourhood];
+	}
+}
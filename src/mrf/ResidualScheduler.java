@@ -0,0 +1,126 @@
+package mrf;
+
+/**
+ * Residual belief propagation: instead of sending every message in every sweep, the message
+ * that would change the most (has the largest residual) is always sent first. Sending a message
+ * to a sentence can only change the messages going out from that sentence, so only their
+ * residuals are recomputed. When no message would change more than delta, flooding sweeps are
+ * run until none changes more than delta, just as with the flooding schedule. Without them the
+ * many small changes that are left add up, and the beliefs can differ more than delta.
+ * @author jonathan
+ *
+ */
+class ResidualScheduler {
+	
+	private final ArrayMessages messages;
+	private final double[] residuals; //by message index
+	private final int[] heap; //message indices, with the largest residual first
+	private final int[] heapPositions; //by message index
+	private int heapSize;
+	
+	ResidualScheduler(ArrayMessages messages){
+		this.messages = messages;
+		int size = messages.numSentences() * messages.width();
+		residuals = new double[size];
+		heap = new int[size];
+		heapPositions = new int[size];
+	}
+	
+	/**
+	 * @return the number of messages that were sent
+	 */
+	long propagate(double delta, long maxUpdates){
+		heapSize = 0;
+		for(int from = 0; from < messages.numSentences(); from++){
+			messages.prepareSender(from);
+			for(int to = messages.leftmostNeighbour(from); to <= messages.rightmostNeighbour(from); to++){
+				if(to != from){
+					messages.computeMessage(from, to);
+					int msgIndex = messages.index(to, from);
+					residuals[msgIndex] = messages.residual(from, to);
+					heap[heapSize] = msgIndex;
+					heapPositions[msgIndex] = heapSize;
+					heapSize ++;
+					siftUp(heapSize - 1);
+				}
+			}
+		}
+		
+		long updates = 0;
+		while(heapSize > 0 && residuals[heap[0]] > delta && updates < maxUpdates){
+			int msgIndex = heap[0];
+			int to = messages.receiverOf(msgIndex);
+			int from = messages.senderOf(msgIndex);
+			messages.prepareSender(from);
+			messages.computeMessage(from, to);
+			messages.commitMessage(from, to);
+			updates ++;
+			setResidual(msgIndex, 0);
+			
+			messages.prepareSender(to);
+			for(int next = messages.leftmostNeighbour(to); next <= messages.rightmostNeighbour(to); next++){
+				if(next != to && next != from){ //The message to 'from' doesn't depend on what 'from' sent
+					messages.computeMessage(to, next);
+					setResidual(messages.index(next, to), messages.residual(to, next));
+				}
+			}
+		}
+		
+		//Like the flooding schedule, end with sweeps that also apply all changes smaller than delta
+		boolean anyChange = true;
+		while(anyChange && updates < maxUpdates){
+			long before = messages.messageUpdates;
+			anyChange = messages.sweep(delta);
+			updates += messages.messageUpdates - before;
+		}
+		return updates;
+	}
+	
+	private void setResidual(int msgIndex, double residual){
+		double previous = residuals[msgIndex];
+		residuals[msgIndex] = residual;
+		if(residual > previous){
+			siftUp(heapPositions[msgIndex]);
+		}else if(residual < previous){
+			siftDown(heapPositions[msgIndex]);
+		}
+	}
+	
+	private void siftUp(int pos){
+		while(pos > 0){
+			int parent = (pos - 1) / 2;
+			if(residuals[heap[parent]] >= residuals[heap[pos]]){
+				return;
+			}
+			swap(pos, parent);
+			pos = parent;
+		}
+	}
+	
+	private void siftDown(int pos){
+		while(true){
+			int largest = pos;
+			int left = 2 * pos + 1;
+			int right = left + 1;
+			if(left < heapSize && residuals[heap[left]] > residuals[heap[largest]]){
+				largest = left;
+			}
+			if(right < heapSize && residuals[heap[right]] > residuals[heap[largest]]){
+				largest = right;
+			}
+			if(largest == pos){
+				return;
+			}
+			swap(pos, largest);
+			pos = largest;
+		}
+	}
+	
+	private void swap(int a, int b){
+		int tmp = heap[a];
+		heap[a] = heap[b];
+		heap[b] = tmp;
+		heapPositions[heap[a]] = a;
+		heapPositions[heap[b]] = b;
+	}
+}
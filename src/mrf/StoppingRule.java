@@ -0,0 +1,44 @@
+package mrf;
+
+import gnu.trove.list.array.TDoubleArrayList;
+
+/**
+ * Decides when belief propagation can stop before all messages have converged, based
+ * on the largest change of any message in each sweep so far. maxRuns of the params
+ * is always an upper limit.
+ * @author jonathan
+ *
+ */
+public interface StoppingRule {
+	
+	/**
+	 * Only stop when the messages have converged.
+	 */
+	public static final StoppingRule NONE = maxResiduals -> false;
+	
+	/**
+	 * @param maxResiduals the largest change of any message (as a probability), for each sweep so far
+	 */
+	boolean stop(TDoubleArrayList maxResiduals);
+	
+	/**
+	 * Stops when no message changed more than the given residual in the last sweep.
+	 */
+	public static StoppingRule belowResidual(double residual){
+		return maxResiduals -> maxResiduals.get(maxResiduals.size() - 1) <= residual;
+	}
+	
+	/**
+	 * Stops when the largest change hasn't decreased during the last 'patience' sweeps,
+	 * which happens when the messages oscillate instead of converging.
+	 */
+	public static StoppingRule noProgress(int patience){
+		return maxResiduals -> {
+			int last = maxResiduals.size() - 1;
+			if(last < patience){
+				return false;
+			}
+			return maxResiduals.get(last) >= maxResiduals.get(last - patience);
+		};
+	}
+}
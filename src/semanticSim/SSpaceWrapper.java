@@ -47,7 +47,7 @@ public class SSpaceWrapper {
 	
 	private static SSpaceWrapper instance;
 	
-	public static SSpaceWrapper instance(){
+	public static synchronized SSpaceWrapper instance(){ //datasets are loaded in parallel, see DatasetLoader
 		if(instance == null){
 			String sspaceDir = Environment.resources() + "/sspace"; //TODO hardcoded paths
 			File sspaceFile = new File(sspaceDir + "/space-lsa-500.sspace");
@@ -127,7 +127,7 @@ public class SSpaceWrapper {
 	}
 
 	public static NgramIdf loadNgramIdf() {
-		return NgramIdf.fromXmlFile(new File(Environment.resources() + "/xml-datasets/ngram-frequencies.xml"),
+		return NgramIdf.fromFile(new File(Environment.resources() + "/xml-datasets/ngram-frequencies.xml"),
 				NgramIdf.DEFAULT_NGRAM_MIN_COUNT);
 	}
 
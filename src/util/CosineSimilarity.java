@@ -21,6 +21,16 @@ public class CosineSimilarity {
 		return sum / (calculateNorm(a) * calculateNorm(b));
 	}
 	
+	/**
+	 * The same for sparse vectors, whose norms are already known.
+	 */
+	public static double calculateCosineSimilarity(SparseVector a, SparseVector b){
+		if(a.size() < 1 || b.size() < 1){
+			return 0;
+		}
+		return a.dot(b) / (a.norm() * b.norm());
+	}
+	
 	public static <T> double calculateNorm(TObjectDoubleHashMap<T> feature){
 		double norm = 0;
 		Iterator<T> it = feature.keySet().iterator();
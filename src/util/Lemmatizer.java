@@ -24,7 +24,7 @@ public class Lemmatizer {
 	private static Lemmatizer instance;
     protected StanfordCoreNLP pipeline;
 
-    public static Lemmatizer instance(){
+    public static synchronized Lemmatizer instance(){ //datasets are created in parallel
 		if(instance == null){
 			instance = new Lemmatizer();
 		}
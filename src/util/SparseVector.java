@@ -0,0 +1,106 @@
+package util;
+
+import gnu.trove.map.hash.TLongDoubleHashMap;
+
+import java.util.Arrays;
+
+/**
+ * An immutable sparse vector: the indices of the non-zero entries in increasing order,
+ * with their values, and the L2 norm computed once. The dot product of two vectors is
+ * a merge of their indices, or, if one of them is much larger, a galloping search for
+ * the indices of the smaller one in the larger one.
+ * Indices are longs so that n-gram keys (see dataset.NgramVocabulary) can be used directly.
+ * @author jonathan
+ *
+ */
+public class SparseVector {
+	
+	//Galloping pays off when one vector is this many times larger than the other
+	private static final int GALLOP_RATIO = 8;
+	
+	private final long[] indices;
+	private final double[] values;
+	private final double norm;
+	
+	private SparseVector(long[] indices, double[] values){
+		this.indices = indices;
+		this.values = values;
+		double squareSum = 0;
+		for(double value : values){
+			squareSum += value * value;
+		}
+		norm = Math.sqrt(squareSum);
+	}
+	
+	public static SparseVector of(TLongDoubleHashMap map){
+		long[] indices = map.keys();
+		Arrays.sort(indices);
+		double[] values = new double[indices.length];
+		for(int i = 0; i < indices.length; i++){
+			values[i] = map.get(indices[i]);
+		}
+		return new SparseVector(indices, values);
+	}
+	
+	public int size(){
+		return indices.length;
+	}
+	
+	public double norm(){
+		return norm;
+	}
+	
+	public double dot(SparseVector other){
+		SparseVector small = this;
+		SparseVector large = other;
+		if(small.size() > large.size()){
+			small = other;
+			large = this;
+		}
+		if(small.size() * GALLOP_RATIO < large.size()){
+			return small.gallopingDot(large);
+		}
+		return small.mergeDot(large);
+	}
+	
+	private double mergeDot(SparseVector other){
+		double sum = 0;
+		int i = 0;
+		int j = 0;
+		while(i < indices.length && j < other.indices.length){
+			long a = indices[i];
+			long b = other.indices[j];
+			if(a < b){
+				i++;
+			}else if(a > b){
+				j++;
+			}else{
+				sum += values[i++] * other.values[j++];
+			}
+		}
+		return sum;
+	}
+	
+	private double gallopingDot(SparseVector larger){
+		double sum = 0;
+		int from = 0;
+		for(int i = 0; i < indices.length && from < larger.indices.length; i++){
+			long index = indices[i];
+			int step = 1;
+			int to = from;
+			while(to < larger.indices.length && larger.indices[to] < index){
+				from = to + 1;
+				to += step;
+				step *= 2;
+			}
+			int pos = Arrays.binarySearch(larger.indices, from, Math.min(to + 1, larger.indices.length), index);
+			if(pos >= 0){
+				sum += values[i] * larger.values[pos];
+				from = pos + 1;
+			}else{
+				from = -pos - 1;
+			}
+		}
+		return sum;
+	}
+}
@@ -15,6 +15,7 @@ import dataset.Dataset;
 import dataset.Sentence;
 import dataset.SentenceKey;
 import dataset.SentenceType;
+import dataset.SimilarityProvider;
 import dataset.Text;
 import dataset.TextUtil;
 
@@ -116,6 +117,15 @@ public class InstanceHandler {
 	 */
 	public static <T extends Text> ArrayList<SentenceInstance> createInstances(Dataset<T> dataset, 
 			boolean onlyText, boolean balanceData, HashMap<SentenceKey<T>, Double> mrfClassificationProbabilities){
+		return createInstances(dataset, onlyText, balanceData, mrfClassificationProbabilities, SimilarityProvider.pairwise(dataset));
+	}
+	
+	/**
+	 * Same as above, but the similarity features come from the given provider (e.g. a SentenceIndex of the dataset)
+	 */
+	public static <T extends Text> ArrayList<SentenceInstance> createInstances(Dataset<T> dataset, 
+			boolean onlyText, boolean balanceData, HashMap<SentenceKey<T>, Double> mrfClassificationProbabilities, 
+			SimilarityProvider<T> similarities){
 		
 		ArrayList<SentenceInstance> instances = new ArrayList<SentenceInstance>();
 		for(CitingPaper<T> citer : dataset.citers){
@@ -128,7 +138,7 @@ public class InstanceHandler {
 				if(onlyText){
 					features = extractFeatures(previous, sentence, next, dataset, onlyText, i);
 				}else{
-					features = extractFeaturesEnhanced(citer.sentences, i, dataset, mrfClassificationProbabilities, citerTitle);
+					features = extractFeaturesEnhanced(citer.sentences, i, dataset, mrfClassificationProbabilities, citerTitle, similarities);
 				}
 				if(sentence.type == SentenceType.EXPLICIT_REFERENCE){ //TODO
 					continue; //Excluded
@@ -184,7 +194,7 @@ public class InstanceHandler {
 		return features;
 	}
 	
-	private static <T extends Text> Map<String, Comparable<?>> extractFeaturesEnhanced(List<Sentence<T>> sentences, int sentenceIndex, Dataset<T> dataset, HashMap<SentenceKey<T>, Double> mrfClassificationProbabilities, String citerTitle){
+	private static <T extends Text> Map<String, Comparable<?>> extractFeaturesEnhanced(List<Sentence<T>> sentences, int sentenceIndex, Dataset<T> dataset, HashMap<SentenceKey<T>, Double> mrfClassificationProbabilities, String citerTitle, SimilarityProvider<T> similarities){
 		TextUtil texts = TextUtil.instance();
 		Map<String, Comparable<?>> features = new HashMap<String, Comparable<?>>();
 		Sentence<T> sentence = sentences.get(sentenceIndex);
@@ -229,9 +239,9 @@ public class InstanceHandler {
 		
 		//TODO
 		features.put(FeatureName.CITE_NEXT_DISTANCE.toString(), distNextExpl);
-		features.put(FeatureName.TITLE_SIMILARITY.toString(), sentence.text.similarity(dataset.citedTitle));
-		features.put(FeatureName.CONTENT_SIMILARITY.toString(), sentence.text.similarity(dataset.citedContent));
-		features.put(FeatureName.CITE_SIMILARITY.toString(), sentence.text.similarity(dataset.mergedExplicitCitations));
+		features.put(FeatureName.TITLE_SIMILARITY.toString(), similarities.similarity(sentence, dataset.citedTitle));
+		features.put(FeatureName.CONTENT_SIMILARITY.toString(), similarities.similarity(sentence, dataset.citedContent));
+		features.put(FeatureName.CITE_SIMILARITY.toString(), similarities.similarity(sentence, dataset.mergedExplicitCitations));
 		features.put(FeatureName.STARTS_DET.toString(), TextUtil.instance().startsWithDet(rawWords));
 		features.put(FeatureName.CONTAINS_DET.toString(), TextUtil.instance().containsDet(rawWords));
 //		